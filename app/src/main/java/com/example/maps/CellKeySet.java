@@ -0,0 +1,105 @@
+package com.example.maps;
+
+import java.util.Arrays;
+
+/**
+ * Concurrent set of cell keys (see {@link HoleStore#cellKey}) stored as primitive longs.
+ * Keys are spread over independently locked open-addressing segments, so parallel import
+ * workers rarely contend and a million cells cost a few tens of megabytes, not hundreds.
+ */
+public class CellKeySet {
+
+    // Never produced by HoleStore.cellKey: rows are bounded by +-90 degrees of latitude.
+    private static final long EMPTY = Long.MIN_VALUE;
+    private static final int SEGMENTS = 64;
+
+    private static final class Segment {
+        long[] table = newTable(16);
+        int size;
+
+        boolean add(long key) {
+            if ((size + 1) * 2 > table.length) {
+                grow();
+            }
+            int mask = table.length - 1;
+            for (int i = mix(key) & mask; ; i = (i + 1) & mask) {
+                long existing = table[i];
+                if (existing == EMPTY) {
+                    table[i] = key;
+                    size++;
+                    return true;
+                }
+                if (existing == key) {
+                    return false;
+                }
+            }
+        }
+
+        boolean contains(long key) {
+            int mask = table.length - 1;
+            for (int i = mix(key) & mask; ; i = (i + 1) & mask) {
+                long existing = table[i];
+                if (existing == EMPTY) return false;
+                if (existing == key) return true;
+            }
+        }
+
+        private void grow() {
+            long[] old = table;
+            table = newTable(old.length * 2);
+            size = 0;
+            for (long key : old) {
+                if (key != EMPTY) {
+                    add(key);
+                }
+            }
+        }
+
+        private static long[] newTable(int capacity) {
+            long[] table = new long[capacity];
+            Arrays.fill(table, EMPTY);
+            return table;
+        }
+    }
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+
+    public CellKeySet() {
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    /**
+     * Adds a key; returns false if it was already present.
+     */
+    public boolean add(long key) {
+        Segment segment = segments[(mix(key) >>> 26) & (SEGMENTS - 1)];
+        synchronized (segment) {
+            return segment.add(key);
+        }
+    }
+
+    public boolean contains(long key) {
+        Segment segment = segments[(mix(key) >>> 26) & (SEGMENTS - 1)];
+        synchronized (segment) {
+            return segment.contains(key);
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size;
+            }
+        }
+        return size;
+    }
+
+    // Spread neighbouring grid keys; the high bits pick the segment, the low bits the slot.
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
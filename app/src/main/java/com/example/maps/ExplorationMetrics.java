@@ -0,0 +1,68 @@
+package com.example.maps;
+
+import java.util.Locale;
+
+/**
+ * Battery-relevant counters for background exploration. A wakeup is one delivered batch of
+ * location fixes; the goal is few wakeups per hour and few fixes per newly discovered cell.
+ */
+public class ExplorationMetrics {
+
+    private long trackedMillis;
+    private long wakeups;
+    private long fixes;
+    private long cells;
+
+    public ExplorationMetrics() {
+        this(0, 0, 0, 0);
+    }
+
+    public ExplorationMetrics(long trackedMillis, long wakeups, long fixes, long cells) {
+        this.trackedMillis = trackedMillis;
+        this.wakeups = wakeups;
+        this.fixes = fixes;
+        this.cells = cells;
+    }
+
+    public synchronized void recordBatch(int batchFixes, int newCells) {
+        wakeups++;
+        fixes += batchFixes;
+        cells += newCells;
+    }
+
+    public synchronized void addTrackedTime(long millis) {
+        trackedMillis += Math.max(0, millis);
+    }
+
+    public synchronized long getTrackedMillis() {
+        return trackedMillis;
+    }
+
+    public synchronized long getWakeups() {
+        return wakeups;
+    }
+
+    public synchronized long getFixes() {
+        return fixes;
+    }
+
+    public synchronized long getCells() {
+        return cells;
+    }
+
+    public synchronized double wakeupsPerHour() {
+        return trackedMillis == 0 ? 0 : wakeups * 3_600_000.0 / trackedMillis;
+    }
+
+    // Fixes spent per discovered cell; infinite until the first cell is found.
+    public synchronized double fixesPerCell() {
+        return cells == 0 ? Double.POSITIVE_INFINITY : (double) fixes / cells;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format(Locale.US,
+                "%.1f wakeups/h, %.1f fixes/cell (%d wakeups, %d fixes, %d cells in %d min)",
+                wakeupsPerHour(), fixesPerCell(), wakeups, fixes, cells, trackedMillis / 60_000);
+    }
+}
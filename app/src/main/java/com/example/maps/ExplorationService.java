@@ -0,0 +1,238 @@
+package com.example.maps;
+
+import android.app.Notification;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.app.Service;
+import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.content.pm.ServiceInfo;
+import android.location.Location;
+import android.os.Build;
+import android.os.HandlerThread;
+import android.os.IBinder;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.core.app.NotificationCompat;
+import androidx.core.app.ServiceCompat;
+import androidx.core.content.ContextCompat;
+
+import com.google.android.gms.location.FusedLocationProviderClient;
+import com.google.android.gms.location.LocationCallback;
+import com.google.android.gms.location.LocationRequest;
+import com.google.android.gms.location.LocationResult;
+import com.google.android.gms.location.LocationServices;
+import com.google.android.gms.location.Priority;
+
+import java.io.IOException;
+
+/**
+ * Foreground service that keeps discovering cells while the map is closed.
+ * Asks for GPS-accurate fixes often enough to see every cell at walking pace, but lets the
+ * fused provider batch them, so the app is woken once per batch instead of once per fix.
+ * New cells go straight to {@link HoleStore}; {@link MapsActivity} picks them up
+ * incrementally the next time it starts.
+ */
+public class ExplorationService extends Service {
+
+    public static final String ACTION_STOP = "com.example.maps.action.STOP_EXPLORING";
+    private static final String TAG = ExplorationService.class.getSimpleName();
+    private static final String CHANNEL_ID = "exploration";
+    private static final int NOTIFICATION_ID = 1;
+    private static final String METRICS_PREFS = "exploration_metrics";
+    // Shared with MapsActivity's other settings.
+    private static final String APP_PREFS = "app_prefs";
+    private static final String KEY_ENABLED = "exploration_enabled";
+
+    //Customizable configurations
+    // A walker covers about 20 m in 15 s, under half a hole width (2 * SHOW_RADIUS, ~44 m).
+    private static final long INTERVAL_MILLIS = 15_000;
+    private static final long MIN_INTERVAL_MILLIS = 10_000;
+    // Let the provider hold fixes for up to this long and deliver them in one wakeup.
+    private static final long MAX_BATCH_DELAY_MILLIS = 10 * 60_000;
+    // About half a hole width: standing still costs no fixes, walking still hits every cell.
+    private static final float MIN_DISTANCE_METERS = 20;
+
+    private FusedLocationProviderClient fusedLocationProviderClient;
+    private LocationCallback locationCallback;
+    private HandlerThread locationThread;
+    private HoleStore holeStore;
+    private ExplorationMetrics metrics;
+    private long lastMark;
+    private boolean tracking;
+
+    /**
+     * Starts the tracker; must be called while the app is in the foreground.
+     */
+    public static void start(Context context) {
+        ContextCompat.startForegroundService(context, new Intent(context, ExplorationService.class));
+    }
+
+    /**
+     * Whether the user wants background exploration; on unless switched off.
+     */
+    public static boolean isEnabled(Context context) {
+        return context.getSharedPreferences(APP_PREFS, MODE_PRIVATE).getBoolean(KEY_ENABLED, true);
+    }
+
+    /**
+     * Remembers the user's choice; switching off also stops a running tracker.
+     */
+    public static void setEnabled(Context context, boolean enabled) {
+        context.getSharedPreferences(APP_PREFS, MODE_PRIVATE).edit()
+                .putBoolean(KEY_ENABLED, enabled)
+                .apply();
+        if (!enabled) {
+            context.stopService(new Intent(context, ExplorationService.class));
+        }
+    }
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        holeStore = HoleStore.open(this);
+        fusedLocationProviderClient = LocationServices.getFusedLocationProviderClient(this);
+        metrics = loadMetrics();
+        // Batches are handled off the main thread since they touch the hole file.
+        locationThread = new HandlerThread("exploration");
+        locationThread.start();
+        locationCallback = new LocationCallback() {
+            @Override
+            public void onLocationResult(@NonNull LocationResult locationResult) {
+                onBatch(locationResult);
+            }
+        };
+    }
+
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        try {
+            ServiceCompat.startForeground(this, NOTIFICATION_ID, buildNotification(),
+                    ServiceInfo.FOREGROUND_SERVICE_TYPE_LOCATION);
+        } catch (SecurityException | IllegalStateException e) {
+            // Android 14+ refuses a location service started from the background, which is
+            // also ForegroundServiceStartNotAllowedException; the map restarts it on return.
+            Log.e(TAG, "Can't run exploration in the foreground", e);
+            stopSelf();
+            return START_NOT_STICKY;
+        }
+        if (intent != null && ACTION_STOP.equals(intent.getAction())) {
+            // Stopped from the notification: stay off until switched back on in the map.
+            setEnabled(this, false);
+            return START_NOT_STICKY;
+        }
+        if (!isEnabled(this)) {
+            stopSelf();
+            return START_NOT_STICKY;
+        }
+        if (!tracking) {
+            startTracking();
+        }
+        // Not sticky: without background location access a restart could not track anyway,
+        // so MapsActivity.onStart starts it again instead.
+        return START_NOT_STICKY;
+    }
+
+    @Override
+    public void onDestroy() {
+        if (tracking) {
+            fusedLocationProviderClient.removeLocationUpdates(locationCallback);
+            tracking = false;
+        }
+        locationThread.quitSafely();
+        markTrackedTime();
+        saveMetrics();
+        Log.i(TAG, "Exploration stopped: " + metrics);
+        super.onDestroy();
+    }
+
+    @Override
+    public IBinder onBind(Intent intent) {
+        return null;
+    }
+
+    private void startTracking() {
+        LocationRequest locationRequest = new LocationRequest.Builder(
+                Priority.PRIORITY_HIGH_ACCURACY, INTERVAL_MILLIS)
+                .setMinUpdateIntervalMillis(MIN_INTERVAL_MILLIS)
+                .setMaxUpdateDelayMillis(MAX_BATCH_DELAY_MILLIS)
+                .setMinUpdateDistanceMeters(MIN_DISTANCE_METERS)
+                .build();
+        try {
+            fusedLocationProviderClient.requestLocationUpdates(
+                    locationRequest, locationCallback, locationThread.getLooper());
+            tracking = true;
+            lastMark = SystemClock.elapsedRealtime();
+        } catch (SecurityException e) {
+            Log.e(TAG, "Location permission missing, stopping exploration", e);
+            stopSelf();
+        }
+    }
+
+    private void onBatch(LocationResult locationResult) {
+        int newCells = 0;
+        for (Location location : locationResult.getLocations()) {
+            try {
+                if (holeStore.discover(location.getLatitude(), location.getLongitude()) != null) {
+                    newCells++;
+                }
+            } catch (IOException e) {
+                Log.e(TAG, "Error saving discovered cell", e);
+            }
+        }
+        metrics.recordBatch(locationResult.getLocations().size(), newCells);
+        markTrackedTime();
+        saveMetrics();
+        Log.d(TAG, "Batch of " + locationResult.getLocations().size() + " fixes, "
+                + newCells + " new cells; " + metrics);
+    }
+
+    private void markTrackedTime() {
+        if (lastMark == 0) {
+            return;
+        }
+        long now = SystemClock.elapsedRealtime();
+        metrics.addTrackedTime(now - lastMark);
+        lastMark = now;
+    }
+
+    private ExplorationMetrics loadMetrics() {
+        SharedPreferences prefs = getSharedPreferences(METRICS_PREFS, MODE_PRIVATE);
+        return new ExplorationMetrics(prefs.getLong("tracked_millis", 0),
+                prefs.getLong("wakeups", 0), prefs.getLong("fixes", 0), prefs.getLong("cells", 0));
+    }
+
+    private void saveMetrics() {
+        getSharedPreferences(METRICS_PREFS, MODE_PRIVATE).edit()
+                .putLong("tracked_millis", metrics.getTrackedMillis())
+                .putLong("wakeups", metrics.getWakeups())
+                .putLong("fixes", metrics.getFixes())
+                .putLong("cells", metrics.getCells())
+                .apply();
+    }
+
+    private Notification buildNotification() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            NotificationChannel channel = new NotificationChannel(CHANNEL_ID,
+                    getString(R.string.exploration_channel_name), NotificationManager.IMPORTANCE_LOW);
+            getSystemService(NotificationManager.class).createNotificationChannel(channel);
+        }
+        PendingIntent openMap = PendingIntent.getActivity(this, 0,
+                new Intent(this, MapsActivity.class), PendingIntent.FLAG_IMMUTABLE);
+        PendingIntent stop = PendingIntent.getService(this, 1,
+                new Intent(this, ExplorationService.class).setAction(ACTION_STOP),
+                PendingIntent.FLAG_IMMUTABLE);
+        return new NotificationCompat.Builder(this, CHANNEL_ID)
+                .setSmallIcon(R.mipmap.ic_launcher)
+                .setContentTitle(getString(R.string.exploration_notification_title))
+                .setContentIntent(openMap)
+                .addAction(0, getString(R.string.exploration_stop), stop)
+                .setOngoing(true)
+                .setPriority(NotificationCompat.PRIORITY_LOW)
+                .build();
+    }
+}
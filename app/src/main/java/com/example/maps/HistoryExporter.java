@@ -0,0 +1,181 @@
+package com.example.maps;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Streams the exploration history out of {@link HoleStore} as GeoJSON, GPX or CSV.
+ * Centers are read and written through fixed-size NIO buffers, so exporting a huge history
+ * takes constant memory. For GeoJSON, cells that follow each other in the file along the same
+ * row are merged into one rectangle, which is how walked streets end up in the file.
+ */
+public class HistoryExporter {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final HoleStore store;
+
+    public HistoryExporter(HoleStore store) {
+        this.store = store;
+    }
+
+    /**
+     * Writes a GeoJSON FeatureCollection of rectangles; returns the number of features.
+     */
+    public long exportGeoJson(File target) throws IOException {
+        try (ChannelWriter out = new ChannelWriter(new FileOutputStream(target).getChannel())) {
+            out.write("{\"type\":\"FeatureCollection\",\"features\":[\n");
+            RunWriter runs = new RunWriter(out);
+            store.scanCenters(0, runs);
+            runs.flush();
+            out.write("\n]}\n");
+            out.rethrow();
+            return runs.features;
+        }
+    }
+
+    /**
+     * Writes one GPX track through every cell center in recorded order; returns the point count.
+     */
+    public long exportGpx(File target) throws IOException {
+        try (ChannelWriter out = new ChannelWriter(new FileOutputStream(target).getChannel())) {
+            out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                    + "<gpx version=\"1.1\" creator=\"ExplorationMaps\" "
+                    + "xmlns=\"http://www.topografix.com/GPX/1/1\">\n<trk><trkseg>\n");
+            final long[] count = {0};
+            store.scanCenters(0, (lat, lon) -> {
+                out.write("<trkpt lat=\"" + lat + "\" lon=\"" + lon + "\"/>\n");
+                count[0]++;
+            });
+            out.write("</trkseg></trk>\n</gpx>\n");
+            out.rethrow();
+            return count[0];
+        }
+    }
+
+    /**
+     * Writes "lat,lon" lines, one per cell center; returns the line count.
+     */
+    public long exportCsv(File target) throws IOException {
+        try (ChannelWriter out = new ChannelWriter(new FileOutputStream(target).getChannel())) {
+            out.write("lat,lon\n");
+            final long[] count = {0};
+            store.scanCenters(0, (lat, lon) -> {
+                out.write(lat + "," + lon + "\n");
+                count[0]++;
+            });
+            out.rethrow();
+            return count[0];
+        }
+    }
+
+    // Merges consecutive cells of one row into a rectangle; only the current run is kept.
+    private static final class RunWriter implements HoleStore.CenterConsumer {
+        private final ChannelWriter out;
+        private long features;
+        private boolean open;
+        private long row;
+        private long firstCol;
+        private long lastCol;
+
+        RunWriter(ChannelWriter out) {
+            this.out = out;
+        }
+
+        @Override
+        public void accept(double lat, double lon) {
+            long key = HoleStore.cellKey(lat, lon);
+            long cellRow = key >> 32;
+            long cellCol = (int) key;
+            // Neighbouring cells are two indices apart, see HoleStore.isCenterIndex.
+            if (open && cellRow == row && ((cellCol > lastCol && cellCol <= lastCol + 2)
+                    || (cellCol < firstCol && cellCol >= firstCol - 2))) {
+                firstCol = Math.min(firstCol, cellCol);
+                lastCol = Math.max(lastCol, cellCol);
+                return;
+            }
+            flush();
+            open = true;
+            row = cellRow;
+            firstCol = cellCol;
+            lastCol = cellCol;
+        }
+
+        void flush() {
+            if (!open) {
+                return;
+            }
+            double r = HoleStore.SHOW_RADIUS;
+            double south = HoleStore.centerLatitude(row) - r;
+            double north = HoleStore.centerLatitude(row) + r;
+            double west = HoleStore.centerLongitude(firstCol) - r;
+            double east = HoleStore.centerLongitude(lastCol) + r;
+            out.write((features == 0 ? "" : ",\n")
+                    + "{\"type\":\"Feature\",\"properties\":{\"cells\":" + (lastCol - firstCol + 1)
+                    + "},\"geometry\":{\"type\":\"Polygon\",\"coordinates\":[["
+                    + "[" + west + "," + south + "],[" + east + "," + south + "],"
+                    + "[" + east + "," + north + "],[" + west + "," + north + "],"
+                    + "[" + west + "," + south + "]]]}}");
+            features++;
+            open = false;
+        }
+    }
+
+    // Buffered ASCII writer over a channel. Write errors are kept and rethrown at the end,
+    // because it is fed from HoleStore.CenterConsumer callbacks, which can't throw.
+    private static final class ChannelWriter implements AutoCloseable {
+        private final WritableByteChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        private IOException error;
+
+        ChannelWriter(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        void write(String text) {
+            if (error != null) {
+                return;
+            }
+            try {
+                for (int i = 0; i < text.length(); i++) {
+                    if (!buffer.hasRemaining()) {
+                        drain();
+                    }
+                    buffer.put((byte) text.charAt(i));
+                }
+            } catch (IOException e) {
+                error = e;
+            }
+        }
+
+        void rethrow() throws IOException {
+            if (error != null) {
+                throw error;
+            }
+        }
+
+        private void drain() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                if (error == null) {
+                    drain();
+                }
+            } finally {
+                channel.close();
+            }
+            rethrow();
+        }
+    }
+}
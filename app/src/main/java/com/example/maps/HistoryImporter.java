@@ -0,0 +1,509 @@
+package com.example.maps;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Streams exploration history from GeoJSON, GPX or CSV into {@link HoleStore}.
+ * The input is parsed once, front to back, through a fixed NIO buffer into chunks of points.
+ * Worker threads snap each chunk to cells, drop cells already known and append the rest.
+ * Only a bounded number of chunks is in flight, so memory does not depend on the input size.
+ * The exception is the de-duplication index, which holds one long per known cell; it is the
+ * store's own index, so imported cells are not indexed twice.
+ */
+public class HistoryImporter {
+
+    public enum Format { GEOJSON, GPX, CSV }
+
+    /** What an import did. */
+    public static final class Result {
+        public final long points;
+        public final long newCells;
+        public final long millis;
+
+        Result(long points, long newCells, long millis) {
+            this.points = points;
+            this.newCells = newCells;
+            this.millis = millis;
+        }
+
+        @Override
+        public String toString() {
+            return points + " points, " + newCells + " new cells in " + millis + " ms";
+        }
+    }
+
+    //Customizable configurations
+    private static final int CHUNK_POINTS = 16 * 1024;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    // A polygon covering more cells than this is most likely not exploration history.
+    private static final long MAX_POLYGON_CELLS = 100_000;
+    private static final int MAX_POLYGON_VERTICES = 10_000;
+
+    private final HoleStore store;
+    private final int threads;
+
+    public HistoryImporter(HoleStore store) {
+        this(store, Runtime.getRuntime().availableProcessors());
+    }
+
+    public HistoryImporter(HoleStore store, int threads) {
+        this.store = store;
+        this.threads = Math.max(1, threads);
+    }
+
+    public static Format formatOf(String fileName) {
+        String name = fileName.toLowerCase();
+        if (name.endsWith(".gpx")) return Format.GPX;
+        if (name.endsWith(".csv")) return Format.CSV;
+        return Format.GEOJSON;
+    }
+
+    public Result importFile(File source, Format format) throws IOException {
+        long start = System.nanoTime();
+
+        // Shared with the tracker, which checks it under the store lock while we add to it
+        // without; a cell both open at once may be stored twice, which readers tolerate.
+        final CellKeySet known = store.knownCells();
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        ChunkSink sink = new ChunkSink(executor, known);
+        try (ByteSource in = new ByteSource(new FileInputStream(source).getChannel())) {
+            switch (format) {
+                case CSV:
+                    parseCsv(in, sink);
+                    break;
+                case GPX:
+                    parseGpx(in, sink);
+                    break;
+                default:
+                    parseGeoJson(in, sink);
+                    break;
+            }
+            sink.finish();
+        } finally {
+            executor.shutdownNow();
+        }
+        return new Result(sink.points, sink.newCells.get(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    // Collects points into chunks and hands full chunks to the workers.
+    private final class ChunkSink {
+        private final ExecutorService executor;
+        private final CellKeySet known;
+        private final Semaphore inFlight = new Semaphore(threads * 2);
+        private final AtomicLong newCells = new AtomicLong();
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+        private double[] chunk = new double[CHUNK_POINTS * 2];
+        private int filled;
+        private long points;
+
+        ChunkSink(ExecutorService executor, CellKeySet known) {
+            this.executor = executor;
+            this.known = known;
+        }
+
+        void point(double lat, double lon) throws IOException {
+            chunk[filled++] = lat;
+            chunk[filled++] = lon;
+            points++;
+            if (filled == chunk.length) {
+                submit();
+            }
+        }
+
+        void finish() throws IOException {
+            submit();
+            // Wait for every worker by taking all permits back.
+            try {
+                inFlight.acquire(threads * 2);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Import interrupted", e);
+            }
+            Throwable error = failure.get();
+            if (error instanceof IOException) throw (IOException) error;
+            if (error != null) throw new IOException(error);
+        }
+
+        private void submit() throws IOException {
+            if (filled == 0) {
+                return;
+            }
+            if (failure.get() != null) {
+                throw new IOException("Import failed", failure.get());
+            }
+            final double[] work = chunk;
+            final int length = filled;
+            chunk = new double[CHUNK_POINTS * 2];
+            filled = 0;
+            try {
+                inFlight.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Import interrupted", e);
+            }
+            executor.execute(() -> {
+                try {
+                    process(work, length);
+                } catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                } finally {
+                    inFlight.release();
+                }
+            });
+        }
+
+        private void process(double[] work, int length) throws IOException {
+            StringBuilder lines = new StringBuilder();
+            int added = 0;
+            for (int i = 0; i < length; i += 2) {
+                double[] center = HoleStore.snapToGrid(work[i], work[i + 1],
+                        HoleStore.ORIGIN_LATITUDE, HoleStore.ORIGIN_LONGITUDE);
+                if (known.add(HoleStore.cellKey(center[0], center[1]))) {
+                    lines.append(center[0]).append(',').append(center[1]).append('\n');
+                    added++;
+                }
+            }
+            if (added > 0) {
+                store.appendLines(ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.US_ASCII)));
+                newCells.addAndGet(added);
+            }
+        }
+    }
+
+    // "lat,lon[,...]" per line; anything that does not start with two numbers is skipped.
+    private static void parseCsv(ByteSource in, ChunkSink sink) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int b;
+        do {
+            b = in.read();
+            if (b == '\n' || b == -1) {
+                int firstComma = indexOf(line, ',', 0);
+                if (firstComma > 0) {
+                    int secondComma = indexOf(line, ',', firstComma + 1);
+                    int end = secondComma < 0 ? line.length() : secondComma;
+                    try {
+                        double lat = Double.parseDouble(line.substring(0, firstComma).trim());
+                        double lon = Double.parseDouble(line.substring(firstComma + 1, end).trim());
+                        sink.point(lat, lon);
+                    } catch (NumberFormatException e) {
+                        // Header or junk line.
+                    }
+                }
+                line.setLength(0);
+            } else if (line.length() < 256) {
+                line.append((char) b);
+            }
+        } while (b != -1);
+    }
+
+    // Every <trkpt>, <rtept> and <wpt> with lat and lon attributes becomes a point.
+    private static void parseGpx(ByteSource in, ChunkSink sink) throws IOException {
+        StringBuilder tag = new StringBuilder();
+        int b;
+        while ((b = in.read()) != -1) {
+            if (b != '<') {
+                continue;
+            }
+            tag.setLength(0);
+            while ((b = in.read()) != -1 && b != '>') {
+                if (tag.length() < 512) {
+                    tag.append((char) b);
+                }
+            }
+            if (startsWithName(tag, "trkpt") || startsWithName(tag, "rtept") || startsWithName(tag, "wpt")) {
+                String lat = attribute(tag, "lat");
+                String lon = attribute(tag, "lon");
+                if (lat != null && lon != null) {
+                    try {
+                        sink.point(Double.parseDouble(lat), Double.parseDouble(lon));
+                    } catch (NumberFormatException e) {
+                        // Malformed point; skip it.
+                    }
+                }
+            }
+        }
+    }
+
+    /*
+     * Each Polygon, and each polygon of a MultiPolygon, is filled with every cell whose center
+     * lies inside its outer ring and outside its holes. Positions of any other geometry become
+     * single points. The geometry "type" member has to come before "coordinates", as it does
+     * in files written by HistoryExporter; otherwise the file is rejected, since the positions
+     * could not be told apart from polygon rings.
+     */
+    private static void parseGeoJson(ByteSource in, ChunkSink sink) throws IOException {
+        final int maxDepth = 32;
+        // Open '{' and '[' containers; positions are arrays holding only numbers.
+        char[] containers = new char[maxDepth];
+        boolean[] hasPositions = new boolean[maxDepth];
+        boolean[] hasRings = new boolean[maxDepth];
+        boolean[] hasType = new boolean[maxDepth];
+        int top = 0;
+        double[] numbers = new double[3];
+        int numberCount = 0;
+        boolean polygon = false;
+        String lastKey = null;
+        PolygonRings rings = new PolygonRings();
+        StringBuilder token = new StringBuilder();
+
+        int b = in.read();
+        while (b != -1) {
+            if (b == '"') {
+                token.setLength(0);
+                while ((b = in.read()) != -1 && b != '"') {
+                    if (b == '\\') {
+                        b = in.read();
+                    }
+                    if (token.length() < 64) {
+                        token.append((char) b);
+                    }
+                }
+                String text = token.toString();
+                b = in.read();
+                while (b == ' ' || b == '\t' || b == '\r' || b == '\n') {
+                    b = in.read();
+                }
+                if (b == ':') {
+                    lastKey = text;
+                    if (text.equals("coordinates") && !hasType[top]) {
+                        throw new IOException(
+                                "GeoJSON \"coordinates\" before \"type\" is not supported");
+                    }
+                } else if ("type".equals(lastKey)) {
+                    hasType[top] = true;
+                    if (text.equals("Polygon") || text.equals("MultiPolygon")) {
+                        polygon = true;
+                    } else if (!text.equals("Feature") && !text.equals("FeatureCollection")) {
+                        polygon = false;
+                    }
+                }
+                continue;
+            }
+            if (b == '[' || b == '{') {
+                if (++top >= maxDepth) {
+                    throw new IOException("GeoJSON nested too deeply");
+                }
+                containers[top] = (char) b;
+                hasPositions[top] = false;
+                hasRings[top] = false;
+                hasType[top] = false;
+                numberCount = 0;
+            } else if (b == '}') {
+                top = Math.max(0, top - 1);
+                numberCount = 0;
+            } else if (b == ']') {
+                if (numberCount >= 2) {
+                    // A position closed: [lon, lat(, alt)].
+                    double lon = numbers[0];
+                    double lat = numbers[1];
+                    if (polygon) {
+                        rings.add(lat, lon);
+                    } else {
+                        sink.point(lat, lon);
+                    }
+                    if (top > 1) {
+                        hasPositions[top - 1] = true;
+                    }
+                } else if (hasPositions[top] && polygon) {
+                    // A ring closed.
+                    rings.closeRing();
+                    if (top > 1) {
+                        hasRings[top - 1] = true;
+                    }
+                } else if (hasRings[top] && polygon) {
+                    // A polygon closed.
+                    fillPolygon(sink, rings);
+                    rings.clear();
+                }
+                numberCount = 0;
+                top = Math.max(0, top - 1);
+            } else if (b == '-' || (b >= '0' && b <= '9')) {
+                token.setLength(0);
+                while (b == '-' || b == '+' || b == '.' || b == 'e' || b == 'E' || (b >= '0' && b <= '9')) {
+                    token.append((char) b);
+                    b = in.read();
+                }
+                if (top > 0 && containers[top] == '[' && numberCount < numbers.length) {
+                    try {
+                        numbers[numberCount++] = Double.parseDouble(token.toString());
+                    } catch (NumberFormatException e) {
+                        throw new IOException("Bad number in GeoJSON: " + token);
+                    }
+                }
+                continue;
+            }
+            b = in.read();
+        }
+    }
+
+    // Vertices of the polygon being read. The first ring is the outer one, the rest are holes.
+    private static final class PolygonRings {
+        double[] lats = new double[64];
+        double[] lons = new double[64];
+        int size;
+        int[] ringEnds = new int[4];
+        int ringCount;
+
+        void add(double lat, double lon) throws IOException {
+            if (size == MAX_POLYGON_VERTICES) {
+                throw new IOException("Polygon has too many vertices to import");
+            }
+            if (size == lats.length) {
+                lats = Arrays.copyOf(lats, size * 2);
+                lons = Arrays.copyOf(lons, size * 2);
+            }
+            lats[size] = lat;
+            lons[size] = lon;
+            size++;
+        }
+
+        void closeRing() {
+            if (ringCount == ringEnds.length) {
+                ringEnds = Arrays.copyOf(ringEnds, ringCount * 2);
+            }
+            ringEnds[ringCount++] = size;
+        }
+
+        void clear() {
+            size = 0;
+            ringCount = 0;
+        }
+    }
+
+    // Scanline fill: along each grid row, the centers between pairs of edge crossings are
+    // inside. Counting crossings of the holes too keeps their cells out.
+    private static void fillPolygon(ChunkSink sink, PolygonRings rings) throws IOException {
+        if (rings.ringCount == 0 || rings.ringEnds[0] < 3) {
+            return;
+        }
+        double south = Double.MAX_VALUE, north = -Double.MAX_VALUE;
+        double west = Double.MAX_VALUE, east = -Double.MAX_VALUE;
+        for (int i = 0; i < rings.ringEnds[0]; i++) {
+            south = Math.min(south, rings.lats[i]);
+            north = Math.max(north, rings.lats[i]);
+            west = Math.min(west, rings.lons[i]);
+            east = Math.max(east, rings.lons[i]);
+        }
+        double r = HoleStore.SHOW_RADIUS;
+        long minRow = (long) Math.ceil((south - HoleStore.ORIGIN_LATITUDE) / r);
+        long maxRow = (long) Math.floor((north - HoleStore.ORIGIN_LATITUDE) / r);
+        long minCol = (long) Math.ceil((west - HoleStore.ORIGIN_LONGITUDE) / r);
+        long maxCol = (long) Math.floor((east - HoleStore.ORIGIN_LONGITUDE) / r);
+        if (((maxRow - minRow) / 2 + 1) * ((maxCol - minCol) / 2 + 1) > MAX_POLYGON_CELLS) {
+            throw new IOException("Polygon covers too many cells to import");
+        }
+        double[] crossings = new double[rings.size];
+        for (long row = minRow; row <= maxRow; row++) {
+            if (!HoleStore.isCenterIndex(row)) {
+                continue;
+            }
+            double lat = HoleStore.centerLatitude(row);
+            int count = 0;
+            int start = 0;
+            for (int ring = 0; ring < rings.ringCount; ring++) {
+                int end = rings.ringEnds[ring];
+                for (int i = start; i < end; i++) {
+                    int j = i + 1 < end ? i + 1 : start;
+                    double lat1 = rings.lats[i];
+                    double lat2 = rings.lats[j];
+                    if ((lat1 > lat) != (lat2 > lat)) {
+                        crossings[count++] = rings.lons[i]
+                                + (lat - lat1) * (rings.lons[j] - rings.lons[i]) / (lat2 - lat1);
+                    }
+                }
+                start = end;
+            }
+            Arrays.sort(crossings, 0, count);
+            for (int k = 0; k + 1 < count; k += 2) {
+                long fromCol = Math.max(minCol,
+                        (long) Math.ceil((crossings[k] - HoleStore.ORIGIN_LONGITUDE) / r));
+                long toCol = Math.min(maxCol,
+                        (long) Math.floor((crossings[k + 1] - HoleStore.ORIGIN_LONGITUDE) / r));
+                for (long col = fromCol; col <= toCol; col++) {
+                    if (HoleStore.isCenterIndex(col)) {
+                        sink.point(lat, HoleStore.centerLongitude(col));
+                    }
+                }
+            }
+        }
+    }
+
+    private static int indexOf(StringBuilder text, char c, int from) {
+        for (int i = from; i < text.length(); i++) {
+            if (text.charAt(i) == c) return i;
+        }
+        return -1;
+    }
+
+    private static boolean startsWithName(StringBuilder tag, String name) {
+        if (tag.length() <= name.length() || tag.indexOf(name) != 0) {
+            return false;
+        }
+        char next = tag.charAt(name.length());
+        return next == ' ' || next == '\t' || next == '\n' || next == '\r' || next == '/';
+    }
+
+    private static String attribute(StringBuilder tag, String name) {
+        int from = 0;
+        while (true) {
+            int at = tag.indexOf(name, from);
+            if (at < 0) return null;
+            int eq = at + name.length();
+            boolean boundary = at > 0 && Character.isWhitespace(tag.charAt(at - 1));
+            if (boundary && eq < tag.length() && tag.charAt(eq) == '=' && eq + 1 < tag.length()) {
+                char quote = tag.charAt(eq + 1);
+                int end = tag.indexOf(String.valueOf(quote), eq + 2);
+                if ((quote == '"' || quote == '\'') && end > 0) {
+                    return tag.substring(eq + 2, end);
+                }
+            }
+            from = at + 1;
+        }
+    }
+
+    // Byte-at-a-time reader over a channel with a fixed direct buffer.
+    private static final class ByteSource implements AutoCloseable {
+        private final ReadableByteChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        private boolean eof;
+
+        ByteSource(ReadableByteChannel channel) {
+            this.channel = channel;
+            buffer.limit(0);
+        }
+
+        int read() throws IOException {
+            if (!buffer.hasRemaining()) {
+                if (eof) return -1;
+                buffer.clear();
+                int n;
+                do {
+                    n = channel.read(buffer);
+                } while (n == 0);
+                buffer.flip();
+                if (n < 0) {
+                    eof = true;
+                    return -1;
+                }
+            }
+            return buffer.get() & 0xff;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,292 @@
+package com.example.maps;
+
+import android.content.Context;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The hole_coordinates file: one "lat,lon" line per opened hole center.
+ * Shared by {@link MapsActivity} and {@link ExplorationService}, so it has no map
+ * dependency and every read-check-write goes through one process-wide lock.
+ * Coverage checks go through an in-memory index of cell keys, read from the file once and
+ * then only for lines appended since, so a fix costs a few hash lookups, not a file scan.
+ */
+public class HoleStore {
+
+    public static final String FILE_NAME = "hole_coordinates";
+    public static final double SHOW_RADIUS = 0.0002;
+    // Holes are snapped to a grid anchored here.
+    public static final double ORIGIN_LATITUDE = 0;
+    public static final double ORIGIN_LONGITUDE = 0;
+    private static final Object LOCK = new Object();
+    private static final int BUFFER_SIZE = 64 * 1024;
+    // Cell index per file path, shared by every HoleStore on that file; guarded by LOCK.
+    private static final Map<String, CellIndex> INDEXES = new HashMap<>();
+
+    private static final class CellIndex {
+        final CellKeySet keys = new CellKeySet();
+        // Bytes of the file already in keys.
+        long offset;
+    }
+
+    private final File file;
+
+    public HoleStore(File file) {
+        this.file = file;
+    }
+
+    public static HoleStore open(Context context) {
+        return new HoleStore(new File(context.getFilesDir(), FILE_NAME));
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    // Check whether or not the point is out of the bounds of every recorded hole center.
+    public boolean isOutside(double lat, double lon) throws IOException {
+        synchronized (LOCK) {
+            return !covers(index().keys, lat, lon);
+        }
+    }
+
+    /**
+     * Opens the hole for a point if it is outside every known hole.
+     * Returns the snapped center of the new hole, or null if the point was already explored.
+     */
+    public double[] discover(double lat, double lon) throws IOException {
+        synchronized (LOCK) {
+            if (covers(index().keys, lat, lon)) {
+                return null;
+            }
+            double[] center = snapToGrid(lat, lon, ORIGIN_LATITUDE, ORIGIN_LONGITUDE);
+            return add(center[0], center[1]) ? center : null;
+        }
+    }
+
+    /**
+     * Appends a hole center unless that center is already stored.
+     * Returns false for a duplicate.
+     */
+    public boolean add(double lat, double lon) throws IOException {
+        synchronized (LOCK) {
+            CellIndex index = index();
+            long key = cellKey(lat, lon);
+            if (index.keys.contains(key)) {
+                return false;
+            }
+            StringBuilder data = new StringBuilder();
+            data.append(lat).append(",").append(lon).append("\n");
+            byte[] bytes = data.toString().getBytes(StandardCharsets.US_ASCII);
+            boolean current = index.offset == file.length();
+            try (FileOutputStream fos = new FileOutputStream(file, true)) {
+                fos.write(bytes);
+            }
+            index.keys.add(key);
+            if (current) {
+                index.offset += bytes.length;
+            }
+            return true;
+        }
+    }
+
+    /** Receives hole centers from {@link #scanCenters}. */
+    public interface CenterConsumer {
+        void accept(double lat, double lon);
+    }
+
+    /**
+     * Reads the hole centers appended at or after the given byte offset into out, and returns
+     * the offset to pass next time. Only complete lines are consumed. Returns -1 if the file
+     * has shrunk since the offset was taken, in which case the caller should reload from 0.
+     */
+    public long readCenters(long fromOffset, final List<double[]> out) throws IOException {
+        return scanCenters(fromOffset, (lat, lon) -> out.add(new double[]{lat, lon}));
+    }
+
+    /**
+     * Streams the hole centers at or after the given byte offset through a fixed-size buffer,
+     * so memory use does not grow with the history. Same return value as {@link #readCenters}.
+     * The lock is only held to take the file size: the file is append-only, so everything
+     * below that size stays as it is, and slow consumers don't block writers.
+     */
+    public long scanCenters(long fromOffset, CenterConsumer consumer) throws IOException {
+        long size;
+        synchronized (LOCK) {
+            if (!file.exists()) {
+                return fromOffset == 0 ? 0 : -1;
+            }
+            size = file.length();
+        }
+        if (size < fromOffset) {
+            return -1;
+        }
+        try (FileChannel channel = new FileInputStream(file).getChannel()) {
+            channel.position(fromOffset);
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            StringBuilder line = new StringBuilder();
+            long position = fromOffset;
+            long consumed = fromOffset;
+            // Stop at the snapshot size; appends after it are left for the next call.
+            while (position < size && channel.read(buffer) > 0) {
+                buffer.flip();
+                while (buffer.hasRemaining() && position < size) {
+                    byte b = buffer.get();
+                    position++;
+                    if (b == '\n') {
+                        double[] center = parse(line.toString());
+                        if (center != null) {
+                            consumer.accept(center[0], center[1]);
+                        }
+                        line.setLength(0);
+                        consumed = position;
+                    } else {
+                        line.append((char) b);
+                    }
+                }
+                buffer.clear();
+            }
+            return consumed;
+        }
+    }
+
+    /**
+     * Returns the shared index of the cells stored in this file, brought up to date first.
+     * Bulk imports de-duplicate against it and add their cells to it before appendLines.
+     */
+    CellKeySet knownCells() throws IOException {
+        synchronized (LOCK) {
+            return index().keys;
+        }
+    }
+
+    /**
+     * Appends pre-formatted "lat,lon\n" lines in one write. Their cells must already be in
+     * {@link #knownCells}, so the index can skip these bytes instead of parsing them again.
+     */
+    public void appendLines(ByteBuffer lines) throws IOException {
+        synchronized (LOCK) {
+            CellIndex index = index();
+            boolean current = index.offset == file.length();
+            long written = 0;
+            try (FileChannel channel = new FileOutputStream(file, true).getChannel()) {
+                while (lines.hasRemaining()) {
+                    written += channel.write(lines);
+                }
+            }
+            if (current) {
+                index.offset += written;
+            }
+        }
+    }
+
+    /**
+     * Grid key of the cell whose center is the given snapped hole center. Row and column are
+     * the center's offset from the origin in whole multiples of SHOW_RADIUS.
+     */
+    public static long cellKey(double centerLat, double centerLon) {
+        long row = Math.round((centerLat - ORIGIN_LATITUDE) / SHOW_RADIUS);
+        long col = Math.round((centerLon - ORIGIN_LONGITUDE) / SHOW_RADIUS);
+        return (row << 32) | (col & 0xffffffffL);
+    }
+
+    // snapToGrid puts centers on even multiples of SHOW_RADIUS above the origin and on odd
+    // ones below it, so neighbouring cells are two indices apart.
+    public static boolean isCenterIndex(long index) {
+        return index >= 0 ? index % 2 == 0 : index % 2 != 0;
+    }
+
+    public static double centerLatitude(long row) {
+        return ORIGIN_LATITUDE + SHOW_RADIUS * row;
+    }
+
+    public static double centerLongitude(long col) {
+        return ORIGIN_LONGITUDE + SHOW_RADIUS * col;
+    }
+
+    // The algorithm to detect the direction the user is moving and create hole relative to the -
+    // - starting grid accordingly to avoid overlapping holes making unexpected results.
+    public static double[] snapToGrid(double lat, double lon, double originLatitude, double originLongitude) {
+        double resultLat = originLatitude + SHOW_RADIUS * snapIndex(lat - originLatitude);
+        double resultLon = originLongitude + SHOW_RADIUS * snapIndex(lon - originLongitude);
+        return new double[]{resultLat, resultLon};
+    }
+
+    // Nearest even multiple of SHOW_RADIUS above the origin, nearest odd one below it.
+    // Points exactly on a cell edge go to the same side every time, so the parity holds.
+    private static long snapIndex(double delta) {
+        if (delta > 0) {
+            return 2 * Math.round(delta / (2 * SHOW_RADIUS));
+        } else if (delta < 0) {
+            return 2 * (long) Math.floor(delta / (2 * SHOW_RADIUS)) + 1;
+        }
+        return 0;
+    }
+
+    // Returns this file's cell index, first reading any lines appended since the last call.
+    // Must be called holding LOCK.
+    private CellIndex index() throws IOException {
+        String path = file.getAbsolutePath();
+        CellIndex index = INDEXES.get(path);
+        if (index == null) {
+            index = new CellIndex();
+            INDEXES.put(path, index);
+        }
+        if (file.length() != index.offset) {
+            long offset = load(index, index.offset);
+            if (offset < 0) {
+                // The file was replaced by a shorter one; start over.
+                index = new CellIndex();
+                INDEXES.put(path, index);
+                offset = load(index, 0);
+            }
+            index.offset = offset;
+        }
+        return index;
+    }
+
+    private long load(CellIndex index, long fromOffset) throws IOException {
+        final CellKeySet keys = index.keys;
+        return scanCenters(fromOffset, (lat, lon) -> keys.add(cellKey(lat, lon)));
+    }
+
+    // Whether a stored center lies within SHOW_RADIUS of the point on both axes. Only the few
+    // grid positions around the point can, so each is looked up by key.
+    private static boolean covers(CellKeySet keys, double lat, double lon) {
+        double row = (lat - ORIGIN_LATITUDE) / SHOW_RADIUS;
+        double col = (lon - ORIGIN_LONGITUDE) / SHOW_RADIUS;
+        for (long r = (long) Math.floor(row) - 1; r <= (long) Math.ceil(row) + 1; r++) {
+            if (Math.abs(lat - centerLatitude(r)) > SHOW_RADIUS) {
+                continue;
+            }
+            for (long c = (long) Math.floor(col) - 1; c <= (long) Math.ceil(col) + 1; c++) {
+                if (Math.abs(lon - centerLongitude(c)) <= SHOW_RADIUS
+                        && keys.contains((r << 32) | (c & 0xffffffffL))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static double[] parse(String line) {
+        String[] parts = line.split(",");
+        if (parts.length != 2) {
+            return null;
+        }
+        try {
+            return new double[]{Double.parseDouble(parts[0]), Double.parseDouble(parts[1])};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -9,7 +9,9 @@ import java.io.FileReader;
 import java.io.IOException;
 
 public class Leaderboard extends Application {
+    private static final String LOCAL_USER_ID = "local";
     private int holeCount = 0;
+    private final LeaderboardRanking ranking = new LeaderboardRanking();
 
     public int getHoleCount() {
         return holeCount;
@@ -17,6 +19,13 @@ public class Leaderboard extends Application {
 
     public void setHoleCount(int holeCount) {
         this.holeCount = holeCount;
+        ranking.update(LOCAL_USER_ID, holeCount);
+    }
+
+    // Group ranking shared by everyone on the leaderboard; other users' counts are fed in
+    // with ranking.update(userId, holeCount) as they stream in.
+    public LeaderboardRanking getRanking() {
+        return ranking;
     }
 
     // Use the line
@@ -24,7 +33,7 @@ public class Leaderboard extends Application {
     // to update the number of holes opened by this particular user.
     public int updateHoleCount() {
         int lines = 0;
-        File file = new File(getFilesDir(), "hole_coordinates");
+        File file = new File(getFilesDir(), HoleStore.FILE_NAME);
 
         if (!file.exists()) {
             setHoleCount(0);
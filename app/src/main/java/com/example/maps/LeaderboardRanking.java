@@ -0,0 +1,264 @@
+package com.example.maps;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Ranks many users by hole count while their updates stream in concurrently.
+ * Writers to different users only contend on a small set of striped locks, per-bucket
+ * counts live in a lock-free Fenwick tree, and the ordering lives in a skip list, so
+ * top-K and neighbors-around-user are logarithmic (plus K).
+ * Buckets are exact for small scores and logarithmic above that, so scores of any size
+ * rank correctly with a tree of a few thousand cells. Rank-of-user is logarithmic plus a
+ * walk over the users sharing its bucket, which above 256 spans scores within 1/128 of
+ * each other. Readers never block; while writers are active they see an eventually
+ * consistent view.
+ */
+public class LeaderboardRanking {
+
+    /** One user's position on the board. Ordered by score descending, then user id. */
+    public static final class Entry {
+        private final String userId;
+        private final int score;
+
+        Entry(String userId, int score) {
+            this.userId = userId;
+            this.score = score;
+        }
+
+        public String getUserId() {
+            return userId;
+        }
+
+        public int getScore() {
+            return score;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Entry)) return false;
+            Entry other = (Entry) o;
+            return score == other.score && userId.equals(other.userId);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * userId.hashCode() + score;
+        }
+
+        @Override
+        public String toString() {
+            return userId + "=" + score;
+        }
+    }
+
+    private static final Comparator<Entry> ORDER = (a, b) -> {
+        int byScore = Integer.compare(b.score, a.score);
+        return byScore != 0 ? byScore : a.userId.compareTo(b.userId);
+    };
+
+    //Customizable configurations
+    private static final int DEFAULT_STRIPES = 64;
+    // Scores below 2^SUB_BUCKET_BITS get a bucket each; above that every power-of-two range is
+    // split into 2^(SUB_BUCKET_BITS - 1) buckets, so any int score fits in a few thousand buckets.
+    private static final int SUB_BUCKET_BITS = 8;
+    private static final int BUCKET_COUNT = bucketOf(Integer.MAX_VALUE) + 1;
+
+    private final ConcurrentHashMap<String, Integer> scores = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListSet<Entry> ordered = new ConcurrentSkipListSet<>(ORDER);
+    // 1-based Fenwick tree over score buckets; bucket b sits at index b + 1.
+    private final AtomicLongArray tree;
+    private final AtomicInteger size = new AtomicInteger();
+    private final ReentrantLock[] stripes;
+
+    public LeaderboardRanking() {
+        this(DEFAULT_STRIPES);
+    }
+
+    public LeaderboardRanking(int stripeCount) {
+        if (stripeCount <= 0) {
+            throw new IllegalArgumentException("stripeCount must be > 0: " + stripeCount);
+        }
+        this.tree = new AtomicLongArray(BUCKET_COUNT + 1);
+        this.stripes = new ReentrantLock[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Sets the hole count of a user, inserting the user if needed.
+     */
+    public void update(String userId, int score) {
+        if (score < 0) {
+            throw new IllegalArgumentException("Score must be >= 0: " + score);
+        }
+        ReentrantLock lock = stripeFor(userId);
+        lock.lock();
+        try {
+            Integer previous = scores.put(userId, score);
+            if (previous != null) {
+                if (previous == score) {
+                    return;
+                }
+                ordered.remove(new Entry(userId, previous));
+                add(previous, -1);
+            } else {
+                size.incrementAndGet();
+            }
+            add(score, 1);
+            ordered.add(new Entry(userId, score));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes a user from the board. Returns false if the user was not ranked.
+     */
+    public boolean remove(String userId) {
+        ReentrantLock lock = stripeFor(userId);
+        lock.lock();
+        try {
+            Integer previous = scores.remove(userId);
+            if (previous == null) {
+                return false;
+            }
+            ordered.remove(new Entry(userId, previous));
+            add(previous, -1);
+            size.decrementAndGet();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the hole count of a user, or -1 if the user is not ranked.
+     */
+    public int getScore(String userId) {
+        Integer score = scores.get(userId);
+        return score == null ? -1 : score;
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * Returns the 1-based competition rank of a user (tied scores share a rank),
+     * or -1 if the user is not ranked.
+     */
+    public int rankOf(String userId) {
+        Integer score = scores.get(userId);
+        if (score == null) {
+            return -1;
+        }
+        return countAbove(score) + 1;
+    }
+
+    /**
+     * Returns the number of users whose hole count is strictly greater than the given score.
+     */
+    public int countAbove(int score) {
+        if (score < 0) {
+            return size.get();
+        }
+        int bucket = bucketOf(score);
+        long above = prefixSum(BUCKET_COUNT - 1) - prefixSum(bucket);
+        if (bucket >= (1 << SUB_BUCKET_BITS)) {
+            // Coarse bucket: the skip list tells which of its users are strictly higher.
+            // Entry("", score) sorts before every user with this score, so the head set is
+            // exactly the users with a higher score, walked upward from the lowest.
+            for (Entry entry : ordered.headSet(new Entry("", score), false).descendingSet()) {
+                if (bucketOf(entry.score) != bucket) break;
+                above++;
+            }
+        }
+        // The two prefix sums are read at different moments, so a concurrent insert can
+        // briefly make the difference negative.
+        return (int) Math.max(0, above);
+    }
+
+    /**
+     * Returns the best k users, highest hole count first.
+     */
+    public List<Entry> topK(int k) {
+        List<Entry> result = new ArrayList<>(Math.max(0, Math.min(k, size.get())));
+        Iterator<Entry> it = ordered.iterator();
+        while (result.size() < k && it.hasNext()) {
+            result.add(it.next());
+        }
+        return result;
+    }
+
+    /**
+     * Returns up to {@code radius} users ranked directly above the given user, the user
+     * itself, and up to {@code radius} users ranked directly below, in board order.
+     * Returns an empty list if the user is not ranked.
+     */
+    public List<Entry> neighbors(String userId, int radius) {
+        Integer score = scores.get(userId);
+        if (score == null) {
+            return Collections.emptyList();
+        }
+        Entry self = new Entry(userId, score);
+
+        List<Entry> result = new ArrayList<>(2 * radius + 1);
+        NavigableSet<Entry> above = ordered.headSet(self, false).descendingSet();
+        for (Entry entry : above) {
+            if (result.size() >= radius) break;
+            result.add(entry);
+        }
+        Collections.reverse(result);
+        result.add(self);
+
+        int below = 0;
+        for (Entry entry : ordered.tailSet(self, false)) {
+            if (below++ >= radius) break;
+            result.add(entry);
+        }
+        return result;
+    }
+
+    private ReentrantLock stripeFor(String userId) {
+        int h = userId.hashCode();
+        h ^= (h >>> 16);
+        return stripes[(h & 0x7fffffff) % stripes.length];
+    }
+
+    // Exact below 2^SUB_BUCKET_BITS, then relative width 2^-(SUB_BUCKET_BITS - 1); monotonic.
+    static int bucketOf(int score) {
+        if (score < (1 << SUB_BUCKET_BITS)) {
+            return score;
+        }
+        int shift = 31 - Integer.numberOfLeadingZeros(score) - (SUB_BUCKET_BITS - 1);
+        return (shift << (SUB_BUCKET_BITS - 1)) + (score >> shift);
+    }
+
+    // Fenwick point update; each cell is atomic, and additions commute, so no lock is needed.
+    private void add(int score, long delta) {
+        for (int i = bucketOf(score) + 1; i < tree.length(); i += i & -i) {
+            tree.addAndGet(i, delta);
+        }
+    }
+
+    // Number of users whose score falls in buckets [0, bucket].
+    private long prefixSum(int bucket) {
+        long sum = 0;
+        for (int i = bucket + 1; i > 0; i -= i & -i) {
+            sum += tree.get(i);
+        }
+        return sum;
+    }
+}
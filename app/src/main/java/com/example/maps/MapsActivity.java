@@ -1,15 +1,15 @@
 package com.example.maps;
 
-import static java.lang.Math.abs;
-
 import androidx.annotation.NonNull;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
 
 import android.content.SharedPreferences;
+import android.content.pm.ApplicationInfo;
 import android.content.pm.PackageManager;
 import android.location.Location;
+import android.os.Build;
 import android.os.Bundle;
 import android.util.Log;
 import android.widget.Toast;
@@ -32,16 +32,18 @@ import com.google.android.gms.maps.model.Polygon;
 import com.google.android.gms.maps.model.PolygonOptions;
 import com.google.android.gms.tasks.OnCompleteListener;
 import com.google.android.gms.tasks.Task;
+import com.google.android.libraries.places.api.Places;
 import com.google.android.libraries.places.api.net.PlacesClient;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileOutputStream;
-import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 
 public class MapsActivity extends AppCompatActivity implements OnMapReadyCallback {
@@ -51,21 +53,31 @@ public class MapsActivity extends AppCompatActivity implements OnMapReadyCallbac
     private LocationCallback locationCallback;
     private FusedLocationProviderClient fusedLocationProviderClient;
     private boolean locationPermissionGranted;
+    private boolean requestingLocationUpdates;
     private static final int PERMISSIONS_REQUEST_ACCESS_FINE_LOCATION = 1;
+    private static final int PERMISSIONS_REQUEST_POST_NOTIFICATIONS = 2;
+    private boolean notificationPermissionAsked;
     private Location lastKnownLocation;
     private CameraPosition cameraPosition;
     private static final String KEY_CAMERA_POSITION = "camera_position";
     private static final String KEY_LOCATION = "location";
     private Polygon main_mask;
+    private MarkerLayer markerLayer;
+    private PlacesCache placesCache;
+    private final ExecutorService placesExecutor = Executors.newFixedThreadPool(4);
+    private final Set<String> shownPlaceIds = new HashSet<>();
     private List<LatLng> hole;
-    private double originLatitude;
-    private double originLongitude;
+    private HoleStore holeStore;
+    private final List<List<LatLng>> holeRings = new ArrayList<>();
+    private long syncedOffset;
+    private double originLatitude = HoleStore.ORIGIN_LATITUDE;
+    private double originLongitude = HoleStore.ORIGIN_LONGITUDE;
 
     //Customizable configurations
     private static final String TAG = MapsActivity.class.getSimpleName();
     private static final int DEFAULT_ZOOM = 18;
     private final LatLng DEFAULT_LOCATION = new LatLng(25.0260079, 121.5381223);
-    private final double SHOW_RADIUS = 0.0002;
+    private final double SHOW_RADIUS = HoleStore.SHOW_RADIUS;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -77,9 +89,18 @@ public class MapsActivity extends AppCompatActivity implements OnMapReadyCallbac
             cameraPosition = savedInstanceState.getParcelable(KEY_CAMERA_POSITION);
         }
 
+        holeStore = HoleStore.open(this);
+
         binding = ActivityMapsBinding.inflate(getLayoutInflater());
         setContentView(binding.getRoot());
 
+        // Lets the user turn background exploration off, and back on.
+        binding.explorationSwitch.setChecked(ExplorationService.isEnabled(this));
+        binding.explorationSwitch.setOnCheckedChangeListener((button, checked) -> {
+            ExplorationService.setEnabled(this, checked);
+            startExploration();
+        });
+
         // Obtain the SupportMapFragment and get notified when the map is ready to be used.
         SupportMapFragment mapFragment = (SupportMapFragment) getSupportFragmentManager()
                 .findFragmentById(R.id.map);
@@ -91,6 +112,26 @@ public class MapsActivity extends AppCompatActivity implements OnMapReadyCallbac
         // Prompt the user for permission.
         getLocationPermission();
 
+        // Places lookups go through a local cache; Places shares the Maps API key from the manifest.
+        if (!Places.isInitialized()) {
+            try {
+                ApplicationInfo info = getPackageManager().getApplicationInfo(
+                        getPackageName(), PackageManager.GET_META_DATA);
+                String apiKey = info.metaData == null
+                        ? null : info.metaData.getString("com.google.android.geo.API_KEY");
+                if (apiKey != null && !apiKey.isEmpty()) {
+                    Places.initializeWithNewPlacesApiEnabled(getApplicationContext(), apiKey);
+                }
+            } catch (PackageManager.NameNotFoundException e) {
+                Log.e(TAG, "Can't read API key for Places", e);
+            }
+        }
+        if (Places.isInitialized()) {
+            PlacesClient placesClient = Places.createClient(this);
+            placesCache = new PlacesCache(new PlacesClientBackend(placesClient),
+                    new File(getCacheDir(), "places_cache"));
+        }
+
         locationCallback = new LocationCallback() {
             @Override
             public void onLocationResult(LocationResult locationResult) {
@@ -109,10 +150,75 @@ public class MapsActivity extends AppCompatActivity implements OnMapReadyCallbac
                         }
                     }
                 }
+                // The background tracker may have opened cells since the last sync.
+                if (map != null && holeStore.getFile().length() != syncedOffset) {
+                    syncHoles();
+                }
             }
         };
     }
 
+    @Override
+    protected void onStart() {
+        super.onStart();
+        // Pick up the cells the background tracker found while the map was away.
+        if (map != null) {
+            syncHoles();
+        }
+        // It may have been stopped from its notification meanwhile.
+        binding.explorationSwitch.setChecked(ExplorationService.isEnabled(this));
+        startExploration();
+        if (locationPermissionGranted && map != null) {
+            startLocationUpdates();
+        }
+    }
+
+    @Override
+    protected void onStop() {
+        // Off screen, only the background tracker keeps asking for fixes.
+        stopLocationUpdates();
+        super.onStop();
+    }
+
+    /**
+     * Requests the frequent fixes that open holes while the map is on screen.
+     */
+    private void startLocationUpdates() {
+        if (requestingLocationUpdates) {
+            return;
+        }
+        LocationRequest locationRequest = LocationRequest.create();
+        locationRequest.setPriority(LocationRequest.PRIORITY_HIGH_ACCURACY);
+        locationRequest.setInterval(5000); // 5 seconds
+        locationRequest.setFastestInterval(2000); // Optional: limit how fast updates can come
+        try{
+            fusedLocationProviderClient.requestLocationUpdates(
+                    locationRequest,
+                    locationCallback,
+                    null // Use main looper
+            );
+            requestingLocationUpdates = true;
+        } catch (SecurityException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void stopLocationUpdates() {
+        if (requestingLocationUpdates) {
+            fusedLocationProviderClient.removeLocationUpdates(locationCallback);
+            requestingLocationUpdates = false;
+        }
+    }
+
+    @Override
+    protected void onDestroy() {
+        placesExecutor.shutdownNow();
+        if (markerLayer != null) {
+            markerLayer.shutdown();
+        }
+        super.onDestroy();
+    }
+
     /**
      * Saves the state of the map when the activity is paused.
      */
@@ -146,6 +252,25 @@ public class MapsActivity extends AppCompatActivity implements OnMapReadyCallbac
         }
     }
 
+    /**
+     * Starts the background tracker if it is allowed and switched on.
+     */
+    private void startExploration() {
+        if (!locationPermissionGranted || !ExplorationService.isEnabled(this)) {
+            return;
+        }
+        // Android 13+ hides the tracker's notification, and its Stop action, without this.
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU && !notificationPermissionAsked
+                && ContextCompat.checkSelfPermission(this,
+                android.Manifest.permission.POST_NOTIFICATIONS) != PackageManager.PERMISSION_GRANTED) {
+            notificationPermissionAsked = true;
+            ActivityCompat.requestPermissions(this,
+                    new String[]{android.Manifest.permission.POST_NOTIFICATIONS},
+                    PERMISSIONS_REQUEST_POST_NOTIFICATIONS);
+        }
+        ExplorationService.start(this);
+    }
+
     private void makeToast(String text){
         Toast.makeText(MapsActivity.this,
                 text,
@@ -222,6 +347,10 @@ public class MapsActivity extends AppCompatActivity implements OnMapReadyCallbac
     public void onRequestPermissionsResult(int requestCode,
                                            @NonNull String[] permissions,
                                            @NonNull int[] grantResults) {
+        if (requestCode == PERMISSIONS_REQUEST_POST_NOTIFICATIONS) {
+            // The tracker runs either way; the in-map switch can still stop it.
+            return;
+        }
         locationPermissionGranted = false;
         if (requestCode
                 == PERMISSIONS_REQUEST_ACCESS_FINE_LOCATION) {// If request is cancelled, the result arrays are empty.
@@ -233,19 +362,9 @@ public class MapsActivity extends AppCompatActivity implements OnMapReadyCallbac
             super.onRequestPermissionsResult(requestCode, permissions, grantResults);
         }
         if (locationPermissionGranted) {
-            LocationRequest locationRequest = LocationRequest.create();
-            locationRequest.setPriority(LocationRequest.PRIORITY_HIGH_ACCURACY);
-            locationRequest.setInterval(5000); // 5 seconds
-            locationRequest.setFastestInterval(2000); // Optional: limit how fast updates can come
-            try{
-                fusedLocationProviderClient.requestLocationUpdates(
-                        locationRequest,
-                        locationCallback,
-                        null // Use main looper
-                );
-            } catch (SecurityException e) {
-                throw new RuntimeException(e);
-            }
+            // Keep exploring in the background once the map is closed.
+            startExploration();
+            startLocationUpdates();
         }
         updateLocationUI();
         getDeviceLocation();
@@ -285,7 +404,7 @@ public class MapsActivity extends AppCompatActivity implements OnMapReadyCallbac
         }
 
         // Initialize map and add known holes
-        File file = new File(getFilesDir(), "hole_coordinates");
+        File file = holeStore.getFile();
         if (!file.exists()) {
             try {
                 file.createNewFile();
@@ -296,20 +415,11 @@ public class MapsActivity extends AppCompatActivity implements OnMapReadyCallbac
         refreshHoles();
         if (locationPermissionGranted) {
             makeToast("Permission Granted");
-            LocationRequest locationRequest = LocationRequest.create();
-            locationRequest.setPriority(LocationRequest.PRIORITY_HIGH_ACCURACY);
-            locationRequest.setInterval(5000); // 5 seconds
-            locationRequest.setFastestInterval(2000); // Optional: limit how fast updates can come
-            try{
-                fusedLocationProviderClient.requestLocationUpdates(
-                        locationRequest,
-                        locationCallback,
-                        null // Use main looper
-                );
-            } catch (SecurityException e) {
-                throw new RuntimeException(e);
-            }
+            startLocationUpdates();
         }
+        // Markers are clustered and culled to the visible region whenever the camera settles.
+        markerLayer = new MarkerLayer(map);
+        map.setOnCameraIdleListener(markerLayer);
         // Set default zoom when MyLocation button is clicked.
         map.setOnMyLocationButtonClickListener(() -> {
             getDeviceLocation();
@@ -318,6 +428,9 @@ public class MapsActivity extends AppCompatActivity implements OnMapReadyCallbac
     }
 
     public void refreshHoles(){
+        if (map == null) {
+            return;
+        }
         // Remove outdated mask.
         if (main_mask != null) {
             main_mask.remove();
@@ -334,8 +447,9 @@ public class MapsActivity extends AppCompatActivity implements OnMapReadyCallbac
                 .strokeWidth(0);
 
         // Add all holes.
-        List<List<LatLng>> holes = readHolesFromFile();
-        for (List<LatLng> hole : holes) {
+        holeRings.clear();
+        syncedOffset = readHolesFromStore(0);
+        for (List<LatLng> hole : holeRings) {
             polygonOptions.addHole(hole);
         }
 
@@ -343,6 +457,26 @@ public class MapsActivity extends AppCompatActivity implements OnMapReadyCallbac
         main_mask = map.addPolygon(polygonOptions);
     }
 
+    // Apply only the holes appended since the last refresh or sync, whether they came from -
+    // - this activity or from ExplorationService, as one update of the existing mask.
+    public void syncHoles(){
+        if (main_mask == null) {
+            refreshHoles();
+            return;
+        }
+        int known = holeRings.size();
+        long offset = readHolesFromStore(syncedOffset);
+        if (offset < 0) {
+            // The file was replaced under us; fall back to a full reload.
+            refreshHoles();
+            return;
+        }
+        syncedOffset = offset;
+        if (holeRings.size() > known) {
+            main_mask.setHoles(holeRings);
+        }
+    }
+
     // Make new hole.
     public void addNewHoles(double lat, double lon){
         // Use SharedPreferences to track first run.
@@ -359,156 +493,94 @@ public class MapsActivity extends AppCompatActivity implements OnMapReadyCallbac
             makeHoleFromEdges(lat, lon);
         }
 
-        // Refresh the main mask with the new holes.
-        refreshHoles();
+        // Update the main mask with the new holes.
+        syncHoles();
     }
 
     public void makeFirstHole(double lat, double lon){
-        hole = Arrays.asList(
-                    new LatLng(lat + SHOW_RADIUS, lon - SHOW_RADIUS),
-                    new LatLng(lat + SHOW_RADIUS, lon + SHOW_RADIUS),
-                    new LatLng(lat - SHOW_RADIUS, lon + SHOW_RADIUS),
-                    new LatLng(lat - SHOW_RADIUS, lon - SHOW_RADIUS)
-            );
+        hole = holeAround(lat, lon);
     }
 
-    // The algorithm to detect the direction the user is moving and create hole relative to the -
-    // - starting grid accordingly to avoid overlapping holes making unexpected results.
+    // Create the hole on the grid shared with the background tracker, see HoleStore.snapToGrid.
     public void makeHoleFromEdges(double lat, double lon){
-        double resultLat = originLatitude;
-        double resultLon = originLongitude;
-        double deltaLat = lat - originLatitude;
-        double deltaLon = lon - originLongitude;
-        if(deltaLat > 0){
-            if(Math.ceil(deltaLat/SHOW_RADIUS) % 2 == 0){
-                resultLat = originLatitude + SHOW_RADIUS * Math.ceil(deltaLat/SHOW_RADIUS);
-            } else{
-                resultLat = originLatitude + SHOW_RADIUS * Math.floor(deltaLat/SHOW_RADIUS);
-            }
-        } else if(deltaLat < 0){
-            if(Math.ceil(deltaLat/SHOW_RADIUS) % 2 == 0){
-                resultLat = originLatitude + SHOW_RADIUS * Math.floor(deltaLat/SHOW_RADIUS);
-            } else{
-                resultLat = originLatitude + SHOW_RADIUS * Math.ceil(deltaLat/SHOW_RADIUS);
-            }
-        }
-        if(deltaLon > 0){
-            if(Math.ceil(deltaLon/SHOW_RADIUS) % 2 == 0){
-                resultLon = originLongitude + SHOW_RADIUS * Math.ceil(deltaLon/SHOW_RADIUS);
-            } else{
-                resultLon = originLongitude + SHOW_RADIUS * Math.floor(deltaLon/SHOW_RADIUS);
-            }
-        } else if(deltaLon < 0){
-            if(Math.ceil(deltaLon/SHOW_RADIUS) % 2 == 0){
-                resultLon = originLongitude + SHOW_RADIUS * Math.floor(deltaLon/SHOW_RADIUS);
-            } else{
-                resultLon = originLongitude + SHOW_RADIUS * Math.ceil(deltaLon/SHOW_RADIUS);
-            }
-        }
+        double[] center = HoleStore.snapToGrid(lat, lon, originLatitude, originLongitude);
         // Formulate the new hole to be added.
-        hole = Arrays.asList(
-                new LatLng(resultLat + SHOW_RADIUS, resultLon - SHOW_RADIUS),
-                new LatLng(resultLat + SHOW_RADIUS, resultLon + SHOW_RADIUS),
-                new LatLng(resultLat - SHOW_RADIUS, resultLon + SHOW_RADIUS),
-                new LatLng(resultLat - SHOW_RADIUS, resultLon - SHOW_RADIUS)
-        );
+        hole = holeAround(center[0], center[1]);
         // Save the center of the new hole.
-        saveHoleToFile(resultLat, resultLon);
+        try {
+            holeStore.add(center[0], center[1]);
+            Log.i(TAG, "Hole coordinates saved to " + holeStore.getFile().getAbsolutePath());
+        } catch (IOException e) {
+            Log.e(TAG, "Error saving hole coordinates", e);
+        }
     }
 
     // The algorithm to check whether or not the user has gone out of the bounds from any hole -
     // - center recorded in the hole_coords file.
     public boolean checkOutside(double lat, double lon) {
         try {
-            File file = new File(getFilesDir(), "hole_coordinates");
-            boolean isOutside = true;
-            if (!file.exists()) return true;
-
-            BufferedReader reader = new BufferedReader(new FileReader(file));
-            String line;
-
-            while ((line = reader.readLine()) != null) {
-                String[] parts = line.split(",");
-                if (parts.length == 2) {
-                    double holeLat = Double.parseDouble(parts[0]);
-                    double holeLon = Double.parseDouble(parts[1]);
-
-                    double latDiff = abs(lat - holeLat);
-                    double lonDiff = abs(lon - holeLon);
-
-                    if (latDiff <= SHOW_RADIUS && lonDiff <= SHOW_RADIUS) {
-                        // Inside one of the holes
-                        isOutside = false;
-                        break;
-                    }
-                }
-            }
-
-            reader.close();
-            return isOutside;
-
+            return holeStore.isOutside(lat, lon);
         } catch (IOException e) {
             Log.e(TAG, "Error checking location against holes", e);
             return false;
         }
     }
 
-    // This saves the centers of already opened holes to a file.
-    private void saveHoleToFile(double lat, double lon) {
-        StringBuilder data = new StringBuilder();
-        data.append(lat).append(",").append(lon).append("\n");
+    // Read holes appended after the given offset into holeRings; returns the next offset.
+    private long readHolesFromStore(long fromOffset) {
+        List<double[]> centers = new ArrayList<>();
+        long offset;
         try {
-            // Use internal storage.
-            File file = new File(getFilesDir(), "hole_coordinates");
-            FileOutputStream fos = new FileOutputStream(file, true);
-            fos.write(data.toString().getBytes());
-            fos.close();
-            Log.i(TAG, "Hole coordinates saved to " + file.getAbsolutePath());
+            offset = holeStore.readCenters(fromOffset, centers);
         } catch (IOException e) {
-            Log.e(TAG, "Error saving hole coordinates", e);
+            Log.e(TAG, "Error reading hole coordinates", e);
+            return fromOffset;
+        }
+        // Expand each hole from its center.
+        for (double[] center : centers) {
+            holeRings.add(holeAround(center[0], center[1]));
         }
+        return offset;
     }
 
-    // Read holes from the dedicate file.
-    private List<List<LatLng>> readHolesFromFile() {
-        List<List<LatLng>> holeRings = new ArrayList<>();
-        try {
-            File file = new File(getFilesDir(), "hole_coordinates");
-            BufferedReader reader = new BufferedReader(new FileReader(file));
-            String line;
-            while ((line = reader.readLine()) != null) {
-                String[] parts = line.split(",");
-                if (parts.length == 2) {
-                    double lat = Double.parseDouble(parts[0]);
-                    double lon = Double.parseDouble(parts[1]);
-
-                    // Expand the hole from its center and store into a list.
-                    List<LatLng> hole = Arrays.asList(
-                            new LatLng(lat + SHOW_RADIUS, lon - SHOW_RADIUS),
-                            new LatLng(lat + SHOW_RADIUS, lon + SHOW_RADIUS),
-                            new LatLng(lat - SHOW_RADIUS, lon + SHOW_RADIUS),
-                            new LatLng(lat - SHOW_RADIUS, lon - SHOW_RADIUS)
-                    );
-
-                    holeRings.add(hole);
-                }
-            }
-            reader.close();
-        } catch (IOException e) {
-            Log.e(TAG, "Error reading hole coordinates", e);
-        }
-        return holeRings;
+    private List<LatLng> holeAround(double lat, double lon) {
+        return Arrays.asList(
+                new LatLng(lat + SHOW_RADIUS, lon - SHOW_RADIUS),
+                new LatLng(lat + SHOW_RADIUS, lon + SHOW_RADIUS),
+                new LatLng(lat - SHOW_RADIUS, lon + SHOW_RADIUS),
+                new LatLng(lat - SHOW_RADIUS, lon - SHOW_RADIUS)
+        );
     }
 
-    // Use this method to add markers.
+    // Use this method to add markers. They are drawn through the clustered marker layer, so -
+    // - loading thousands of places only materializes the few visible on screen.
     public void addMarker(String title, double latitude, double longitude) {
-        if (map != null) {
-            LatLng position = new LatLng(latitude, longitude);
-            map.addMarker(new com.google.android.gms.maps.model.MarkerOptions()
-                    .position(position)
-                    .title(title));
+        if (markerLayer != null) {
+            markerLayer.addPoi(title, latitude, longitude);
         } else {
             Log.e(TAG, "Map not ready yet.");
         }
     }
+
+    // Look up nearby places of a type (e.g. "restaurant") through the cache and mark them.
+    public void loadNearbyPlaces(String type, double latitude, double longitude, double radiusMeters) {
+        if (placesCache == null) {
+            Log.e(TAG, "Places not initialized.");
+            return;
+        }
+        placesExecutor.execute(() -> {
+            try {
+                List<PlaceResult> places = placesCache.searchNearby(type, latitude, longitude, radiusMeters);
+                runOnUiThread(() -> {
+                    for (PlaceResult place : places) {
+                        if (shownPlaceIds.add(place.id)) {
+                            addMarker(place.name, place.latitude, place.longitude);
+                        }
+                    }
+                });
+            } catch (IOException e) {
+                Log.e(TAG, "Error looking up nearby places", e);
+            }
+        });
+    }
 }
\ No newline at end of file
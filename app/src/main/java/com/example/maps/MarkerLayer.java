@@ -0,0 +1,212 @@
+package com.example.maps;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import com.google.android.gms.maps.GoogleMap;
+import com.google.android.gms.maps.model.BitmapDescriptor;
+import com.google.android.gms.maps.model.BitmapDescriptorFactory;
+import com.google.android.gms.maps.model.LatLng;
+import com.google.android.gms.maps.model.LatLngBounds;
+import com.google.android.gms.maps.model.Marker;
+import com.google.android.gms.maps.model.MarkerOptions;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Draws POIs as clustered markers, only for the visible part of the map.
+ * Clustering runs on a background thread against a {@link PoiClusterIndex}; the UI thread
+ * only diffs the result against the markers already on screen, reusing hidden
+ * {@link Marker} objects from a pool instead of adding and removing them on every camera move.
+ * Register it with {@link GoogleMap#setOnCameraIdleListener}.
+ */
+public class MarkerLayer implements GoogleMap.OnCameraIdleListener {
+
+    //Customizable configurations
+    private static final int MAX_POOLED_MARKERS = 128;
+    private static final float CLUSTER_HUE = BitmapDescriptorFactory.HUE_ORANGE;
+
+    private final GoogleMap map;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    // Touched on the UI thread only.
+    private final List<PoiClusterIndex.Poi> pois = new ArrayList<>();
+    private final Map<Long, Marker> visible = new HashMap<>();
+    // What each visible marker currently shows, so unchanged ones are left alone.
+    private final Map<Long, PoiClusterIndex.Cluster> shown = new HashMap<>();
+    private final ArrayDeque<Marker> pool = new ArrayDeque<>();
+    private BitmapDescriptor poiIcon;
+    private BitmapDescriptor clusterIcon;
+    private boolean indexDirty = false;
+    private int generation = 0;
+    private boolean shutdown;
+
+    // Touched on the background thread only.
+    private PoiClusterIndex index;
+
+    public MarkerLayer(GoogleMap map) {
+        this.map = map;
+    }
+
+    /**
+     * Adds one POI. The map is refreshed once the current batch of additions is done.
+     */
+    public void addPoi(String title, double latitude, double longitude) {
+        if (shutdown) {
+            return;
+        }
+        pois.add(new PoiClusterIndex.Poi(title, latitude, longitude));
+        if (!indexDirty) {
+            indexDirty = true;
+            // Post so that a loop of addPoi calls only triggers a single re-cluster.
+            mainHandler.post(this::refresh);
+        }
+    }
+
+    @Override
+    public void onCameraIdle() {
+        refresh();
+    }
+
+    /**
+     * Re-clusters the visible region off the UI thread and applies the result.
+     */
+    public void refresh() {
+        if (shutdown) {
+            return;
+        }
+        final LatLngBounds bounds = map.getProjection().getVisibleRegion().latLngBounds;
+        final int zoom = (int) Math.floor(map.getCameraPosition().zoom);
+        final List<PoiClusterIndex.Poi> snapshot = indexDirty ? new ArrayList<>(pois) : null;
+        indexDirty = false;
+        final int requestGeneration = ++generation;
+
+        executor.execute(() -> {
+            if (snapshot != null) {
+                index = new PoiClusterIndex(snapshot);
+            }
+            if (index == null) {
+                return;
+            }
+            // Across the antimeridian west > east, which the index splits into two ranges.
+            final List<PoiClusterIndex.Cluster> clusters = index.query(
+                    bounds.southwest.latitude, bounds.southwest.longitude,
+                    bounds.northeast.latitude, bounds.northeast.longitude, zoom);
+            mainHandler.post(() -> {
+                // A newer camera move has already been queued, or the layer is gone; drop it.
+                if (!shutdown && requestGeneration == generation) {
+                    render(clusters);
+                }
+            });
+        });
+    }
+
+    /**
+     * Stops the background thread and removes every marker this layer owns.
+     */
+    public void shutdown() {
+        shutdown = true;
+        executor.shutdownNow();
+        mainHandler.removeCallbacksAndMessages(null);
+        for (Marker marker : visible.values()) {
+            marker.remove();
+        }
+        for (Marker marker : pool) {
+            marker.remove();
+        }
+        visible.clear();
+        shown.clear();
+        pool.clear();
+    }
+
+    private void render(List<PoiClusterIndex.Cluster> clusters) {
+        Map<Long, Marker> previous = new HashMap<>(visible);
+        Map<Long, PoiClusterIndex.Cluster> previousShown = new HashMap<>(shown);
+        visible.clear();
+        shown.clear();
+
+        // Keep markers whose cell is still on screen, so the common pan case moves nothing.
+        List<PoiClusterIndex.Cluster> fresh = new ArrayList<>();
+        for (PoiClusterIndex.Cluster cluster : clusters) {
+            Marker marker = previous.remove(cluster.key);
+            if (marker != null) {
+                if (!sameContent(previousShown.get(cluster.key), cluster)) {
+                    bind(marker, cluster);
+                }
+                visible.put(cluster.key, marker);
+                shown.put(cluster.key, cluster);
+            } else {
+                fresh.add(cluster);
+            }
+        }
+        for (Marker marker : previous.values()) {
+            release(marker);
+        }
+        for (PoiClusterIndex.Cluster cluster : fresh) {
+            Marker marker = acquire(cluster);
+            if (marker != null) {
+                visible.put(cluster.key, marker);
+                shown.put(cluster.key, cluster);
+            }
+        }
+    }
+
+    private Marker acquire(PoiClusterIndex.Cluster cluster) {
+        Marker marker = pool.poll();
+        if (marker == null) {
+            return map.addMarker(new MarkerOptions()
+                    .position(new LatLng(cluster.latitude, cluster.longitude))
+                    .title(titleOf(cluster))
+                    .icon(iconOf(cluster)));
+        }
+        bind(marker, cluster);
+        marker.setVisible(true);
+        return marker;
+    }
+
+    private void release(Marker marker) {
+        if (pool.size() < MAX_POOLED_MARKERS) {
+            marker.setVisible(false);
+            marker.hideInfoWindow();
+            pool.push(marker);
+        } else {
+            marker.remove();
+        }
+    }
+
+    private void bind(Marker marker, PoiClusterIndex.Cluster cluster) {
+        marker.setPosition(new LatLng(cluster.latitude, cluster.longitude));
+        marker.setTitle(titleOf(cluster));
+        marker.setIcon(iconOf(cluster));
+    }
+
+    private static boolean sameContent(PoiClusterIndex.Cluster a, PoiClusterIndex.Cluster b) {
+        return a != null && a.size == b.size && a.latitude == b.latitude
+                && a.longitude == b.longitude
+                && (a.title == null ? b.title == null : a.title.equals(b.title));
+    }
+
+    private String titleOf(PoiClusterIndex.Cluster cluster) {
+        return cluster.size == 1 ? cluster.title : cluster.size + " places";
+    }
+
+    private BitmapDescriptor iconOf(PoiClusterIndex.Cluster cluster) {
+        if (cluster.size == 1) {
+            if (poiIcon == null) {
+                poiIcon = BitmapDescriptorFactory.defaultMarker();
+            }
+            return poiIcon;
+        }
+        if (clusterIcon == null) {
+            clusterIcon = BitmapDescriptorFactory.defaultMarker(CLUSTER_HUE);
+        }
+        return clusterIcon;
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.maps;
+
+/**
+ * One place returned by a nearby search, reduced to what the map needs.
+ */
+public final class PlaceResult {
+    public final String id;
+    public final String name;
+    public final double latitude;
+    public final double longitude;
+
+    public PlaceResult(String id, String name, double latitude, double longitude) {
+        this.id = id;
+        this.name = name;
+        this.latitude = latitude;
+        this.longitude = longitude;
+    }
+}
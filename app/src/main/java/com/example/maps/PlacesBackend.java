@@ -0,0 +1,17 @@
+package com.example.maps;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Source of nearby-search results behind {@link PlacesCache}. The app uses
+ * {@link PlacesClientBackend}; tests plug in a fake so hit rate and latency can be
+ * measured offline. Called from background threads only.
+ */
+public interface PlacesBackend {
+    // A single nearby search never returns more than this; a full page may be truncated.
+    int MAX_RESULTS = 20;
+
+    List<PlaceResult> searchNearby(String type, double latitude, double longitude,
+                                   double radiusMeters) throws IOException;
+}
@@ -0,0 +1,361 @@
+package com.example.maps;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Caching layer in front of nearby Places lookups.
+ * Results are stored per grid cell and query type. The cell scale is picked from the search
+ * radius, so a search touches at most four cells, and overlapping searches nearby share
+ * them; the cells are merged, de-duplicated by place id and cut back to the search circle.
+ * Each cell lives in an in-memory LRU and in a file under the cache directory, both with a
+ * TTL, and concurrent lookups of the same missing cell share a single backend call.
+ * A cell whose search comes back full is split into its four children, since the backend
+ * caps each search, but only MAX_SPLIT_DEPTH times per lookup; cells still full after that
+ * are kept in memory only, briefly. Expired files are swept, and the oldest go first when the disk tier is over size.
+ * Lookups block, so call them off the UI thread.
+ */
+public class PlacesCache {
+
+    //Customizable configurations
+    public static final int DEFAULT_MEMORY_CELLS = 256;
+    public static final long DEFAULT_TTL_MILLIS = 24L * 60 * 60 * 1000;
+    public static final long DEFAULT_MAX_DISK_BYTES = 4L * 1024 * 1024;
+    // Possibly truncated cells are retried this soon.
+    private static final long INCOMPLETE_TTL_MILLIS = 10L * 60 * 1000;
+    // How many times a full cell may be halved per lookup; each level costs up to 4x the calls,
+    // so one searched cell takes at most 1 + 4 + 16 backend calls.
+    private static final int MAX_SPLIT_DEPTH = 2;
+    private static final int SWEEP_EVERY_WRITES = 32;
+    // Smallest cell edge, about 110 m; each scale level doubles it.
+    private static final double BASE_CELL_DEGREES = 0.001;
+    private static final int MAX_LEVEL = 10;
+    private static final double METERS_PER_DEGREE = 111_320;
+
+    /** Lookup counters, for checking hit rate. */
+    public static final class Stats {
+        public final AtomicLong memoryHits = new AtomicLong();
+        public final AtomicLong diskHits = new AtomicLong();
+        public final AtomicLong backendCalls = new AtomicLong();
+        public final AtomicLong coalesced = new AtomicLong();
+        public final AtomicLong splits = new AtomicLong();
+
+        public double hitRate() {
+            long hits = memoryHits.get() + diskHits.get() + coalesced.get();
+            long total = hits + backendCalls.get();
+            return total == 0 ? 0 : (double) hits / total;
+        }
+    }
+
+    private static final class CachedCell {
+        final long fetchedAt;
+        final List<PlaceResult> places;
+        // False if the backend may have left places out.
+        final boolean complete;
+
+        CachedCell(long fetchedAt, List<PlaceResult> places, boolean complete) {
+            this.fetchedAt = fetchedAt;
+            this.places = places;
+            this.complete = complete;
+        }
+    }
+
+    private final PlacesBackend backend;
+    private final File directory;
+    private final long ttlMillis;
+    private final long maxDiskBytes;
+    private final AtomicInteger writesUntilSweep = new AtomicInteger(1);
+    private final LongSupplier clock;
+    private final Map<String, CachedCell> memory;
+    private final ConcurrentHashMap<String, CompletableFuture<CachedCell>> inFlight =
+            new ConcurrentHashMap<>();
+    private final Stats stats = new Stats();
+
+    public PlacesCache(PlacesBackend backend, File directory) {
+        this(backend, directory, DEFAULT_MEMORY_CELLS, DEFAULT_MAX_DISK_BYTES, DEFAULT_TTL_MILLIS,
+                System::currentTimeMillis);
+    }
+
+    public PlacesCache(PlacesBackend backend, File directory, final int memoryCells,
+                       long maxDiskBytes, long ttlMillis, LongSupplier clock) {
+        this.backend = backend;
+        this.directory = directory;
+        this.maxDiskBytes = maxDiskBytes;
+        this.ttlMillis = ttlMillis;
+        this.clock = clock;
+        this.memory = new LinkedHashMap<String, CachedCell>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedCell> eldest) {
+                return size() > memoryCells;
+            }
+        };
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IllegalStateException("Cannot create cache directory " + directory);
+        }
+    }
+
+    public Stats getStats() {
+        return stats;
+    }
+
+    /**
+     * Returns the places of the given type within radiusMeters of the given point.
+     */
+    public List<PlaceResult> searchNearby(String type, double lat, double lon,
+                                          double radiusMeters) throws IOException {
+        double latRadius = radiusMeters / METERS_PER_DEGREE;
+        double lonRadius = latRadius / Math.max(0.01, Math.cos(Math.toRadians(lat)));
+        int level = levelFor(Math.max(latRadius, lonRadius));
+        double cell = cellDegrees(level);
+
+        long minRow = (long) Math.floor((lat - latRadius) / cell);
+        long maxRow = (long) Math.floor((lat + latRadius) / cell);
+        long minCol = (long) Math.floor((lon - lonRadius) / cell);
+        long maxCol = (long) Math.floor((lon + lonRadius) / cell);
+
+        Map<String, PlaceResult> merged = new LinkedHashMap<>();
+        for (long row = minRow; row <= maxRow; row++) {
+            for (long col = minCol; col <= maxCol; col++) {
+                for (PlaceResult place : getCell(type, level, row, col, MAX_SPLIT_DEPTH).places) {
+                    if (distanceMeters(lat, lon, place.latitude, place.longitude) <= radiusMeters) {
+                        merged.put(place.id, place);
+                    }
+                }
+            }
+        }
+        return new ArrayList<>(merged.values());
+    }
+
+    private CachedCell getCell(String type, int level, long row, long col, int splitsLeft)
+            throws IOException {
+        String key = type + "_" + level + "_" + row + "_" + col;
+        long now = clock.getAsLong();
+        synchronized (memory) {
+            CachedCell cached = memory.get(key);
+            if (cached != null && now - cached.fetchedAt < ttlOf(cached)) {
+                stats.memoryHits.incrementAndGet();
+                return cached;
+            }
+        }
+
+        CompletableFuture<CachedCell> future = new CompletableFuture<>();
+        CompletableFuture<CachedCell> existing = inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            // Someone is already loading this cell; wait for their result.
+            stats.coalesced.incrementAndGet();
+            return await(existing);
+        }
+        try {
+            CachedCell loaded = readFromDisk(key, now);
+            if (loaded != null) {
+                stats.diskHits.incrementAndGet();
+            } else {
+                loaded = fetch(type, level, row, col, splitsLeft);
+                if (loaded.complete) {
+                    writeToDisk(key, loaded);
+                }
+            }
+            synchronized (memory) {
+                memory.put(key, loaded);
+            }
+            future.complete(loaded);
+            return loaded;
+        } catch (IOException | RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+
+    private CachedCell fetch(String type, int level, long row, long col, int splitsLeft)
+            throws IOException {
+        double cell = cellDegrees(level);
+        double centerLat = (row + 0.5) * cell;
+        double centerLon = (col + 0.5) * cell;
+        // Radius of the circle that just covers the whole cell.
+        double halfHeight = cell / 2 * METERS_PER_DEGREE;
+        double halfWidth = halfHeight * Math.cos(Math.toRadians(centerLat));
+        double radius = Math.sqrt(halfHeight * halfHeight + halfWidth * halfWidth);
+
+        stats.backendCalls.incrementAndGet();
+        List<PlaceResult> all = backend.searchNearby(type, centerLat, centerLon, radius);
+        boolean full = all.size() >= PlacesBackend.MAX_RESULTS;
+        if (full && level > 0 && splitsLeft > 0) {
+            // Too dense for one search: the cell is the union of its four half-size children.
+            stats.splits.incrementAndGet();
+            List<PlaceResult> merged = new ArrayList<>();
+            boolean complete = true;
+            for (long childRow = 2 * row; childRow <= 2 * row + 1; childRow++) {
+                for (long childCol = 2 * col; childCol <= 2 * col + 1; childCol++) {
+                    CachedCell child = getCell(type, level - 1, childRow, childCol, splitsLeft - 1);
+                    merged.addAll(child.places);
+                    complete &= child.complete;
+                }
+            }
+            return new CachedCell(clock.getAsLong(), Collections.unmodifiableList(merged), complete);
+        }
+        // Keep only what falls in this cell so neighbouring cells don't store duplicates.
+        List<PlaceResult> inCell = new ArrayList<>();
+        for (PlaceResult place : all) {
+            if ((long) Math.floor(place.latitude / cell) == row
+                    && (long) Math.floor(place.longitude / cell) == col) {
+                inCell.add(place);
+            }
+        }
+        return new CachedCell(clock.getAsLong(), Collections.unmodifiableList(inCell), !full);
+    }
+
+    private long ttlOf(CachedCell cell) {
+        return cell.complete ? ttlMillis : Math.min(ttlMillis, INCOMPLETE_TTL_MILLIS);
+    }
+
+    /**
+     * Deletes expired cell files, then the oldest ones until the disk tier fits its size cap.
+     * Runs on its own every few writes.
+     */
+    public void sweepDisk() {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        long now = clock.getAsLong();
+        List<File> live = new ArrayList<>();
+        long total = 0;
+        for (File file : files) {
+            // Cell files carry their fetch time as modification time, see writeToDisk.
+            if (now - file.lastModified() >= ttlMillis || file.getName().endsWith(".tmp")) {
+                file.delete();
+            } else {
+                live.add(file);
+                total += file.length();
+            }
+        }
+        if (total <= maxDiskBytes) {
+            return;
+        }
+        Collections.sort(live, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+        for (File file : live) {
+            if (total <= maxDiskBytes) {
+                break;
+            }
+            total -= file.length();
+            file.delete();
+        }
+    }
+
+    // File layout: first line is the fetch time, then one "id\tlat\tlon\tname" line per place.
+    private CachedCell readFromDisk(String key, long now) {
+        File file = new File(directory, key);
+        if (!file.exists()) {
+            return null;
+        }
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String header = reader.readLine();
+            if (header == null) {
+                return null;
+            }
+            long fetchedAt = Long.parseLong(header);
+            if (now - fetchedAt >= ttlMillis) {
+                file.delete();
+                return null;
+            }
+            List<PlaceResult> places = new ArrayList<>();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split("\t", 4);
+                if (parts.length == 4) {
+                    places.add(new PlaceResult(parts[0], parts[3],
+                            Double.parseDouble(parts[1]), Double.parseDouble(parts[2])));
+                }
+            }
+            return new CachedCell(fetchedAt, Collections.unmodifiableList(places), true);
+        } catch (IOException | NumberFormatException e) {
+            // A damaged cache file is just a miss.
+            file.delete();
+            return null;
+        }
+    }
+
+    private void writeToDisk(String key, CachedCell cell) {
+        File temp = new File(directory, key + ".tmp");
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(temp))) {
+            writer.write(Long.toString(cell.fetchedAt));
+            writer.write('\n');
+            for (PlaceResult place : cell.places) {
+                writer.write(clean(place.id) + "\t" + place.latitude + "\t" + place.longitude
+                        + "\t" + clean(place.name) + "\n");
+            }
+        } catch (IOException e) {
+            // The memory tier still has it; losing the disk copy only costs a refetch later.
+            temp.delete();
+            return;
+        }
+        File target = new File(directory, key);
+        if (!temp.renameTo(target)) {
+            temp.delete();
+            return;
+        }
+        target.setLastModified(cell.fetchedAt);
+        if (writesUntilSweep.decrementAndGet() <= 0) {
+            writesUntilSweep.set(SWEEP_EVERY_WRITES);
+            sweepDisk();
+        }
+    }
+
+    private static String clean(String value) {
+        return value == null ? "" : value.replace('\t', ' ').replace('\n', ' ');
+    }
+
+    private static CachedCell await(CompletableFuture<CachedCell> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for places lookup", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    // Smallest level whose cell edge is at least the search radius, so a search spans <= 2x2 cells.
+    private static int levelFor(double radiusDegrees) {
+        int level = 0;
+        while (level < MAX_LEVEL && cellDegrees(level) < radiusDegrees) {
+            level++;
+        }
+        return level;
+    }
+
+    private static double cellDegrees(int level) {
+        return BASE_CELL_DEGREES * (1 << level);
+    }
+
+    private static double distanceMeters(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
+                * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 2 * 6_371_000 * Math.asin(Math.sqrt(a));
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.maps;
+
+import com.google.android.gms.maps.model.LatLng;
+import com.google.android.gms.tasks.Tasks;
+import com.google.android.libraries.places.api.model.CircularBounds;
+import com.google.android.libraries.places.api.model.Place;
+import com.google.android.libraries.places.api.net.PlacesClient;
+import com.google.android.libraries.places.api.net.SearchNearbyRequest;
+import com.google.android.libraries.places.api.net.SearchNearbyResponse;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * {@link PlacesBackend} that asks the Places SDK. Blocks on the returned task, so it must
+ * only be used from a background thread, which is how {@link PlacesCache} calls it.
+ */
+public class PlacesClientBackend implements PlacesBackend {
+
+    // The Places API caps a nearby search at 50 km.
+    private static final double MAX_RADIUS_METERS = 50_000;
+    private static final List<Place.Field> FIELDS =
+            Arrays.asList(Place.Field.ID, Place.Field.DISPLAY_NAME, Place.Field.LOCATION);
+
+    private final PlacesClient placesClient;
+
+    public PlacesClientBackend(PlacesClient placesClient) {
+        this.placesClient = placesClient;
+    }
+
+    @Override
+    public List<PlaceResult> searchNearby(String type, double latitude, double longitude,
+                                          double radiusMeters) throws IOException {
+        SearchNearbyRequest request = SearchNearbyRequest.builder(
+                        CircularBounds.newInstance(new LatLng(latitude, longitude),
+                                Math.min(radiusMeters, MAX_RADIUS_METERS)),
+                        FIELDS)
+                .setIncludedTypes(Collections.singletonList(type))
+                // A truncated page then keeps the places nearest the cell, not the most popular.
+                .setRankPreference(SearchNearbyRequest.RankPreference.DISTANCE)
+                .build();
+        SearchNearbyResponse response;
+        try {
+            response = Tasks.await(placesClient.searchNearby(request));
+        } catch (ExecutionException e) {
+            throw new IOException("Places nearby search failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Places nearby search interrupted", e);
+        }
+
+        List<PlaceResult> results = new ArrayList<>();
+        for (Place place : response.getPlaces()) {
+            LatLng location = place.getLocation();
+            if (place.getId() != null && location != null) {
+                results.add(new PlaceResult(place.getId(), place.getDisplayName(),
+                        location.latitude, location.longitude));
+            }
+        }
+        return results;
+    }
+}
@@ -0,0 +1,178 @@
+package com.example.maps;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable spatial index of points of interest with grid-based clustering per zoom level.
+ * The grid for a zoom level is built once, on first use, and is sized in screen pixels, so a
+ * viewport query only visits the handful of cells that fit on screen no matter how many POIs
+ * are loaded. Plain Java, no map classes, so it can be built off the UI thread and unit tested.
+ */
+public class PoiClusterIndex {
+
+    /** A single point of interest. */
+    public static final class Poi {
+        public final String title;
+        public final double latitude;
+        public final double longitude;
+
+        public Poi(String title, double latitude, double longitude) {
+            this.title = title;
+            this.latitude = latitude;
+            this.longitude = longitude;
+        }
+    }
+
+    /** A group of POIs sharing a grid cell; a cluster of size one is the POI itself. */
+    public static final class Cluster {
+        public final long key;
+        public final double latitude;
+        public final double longitude;
+        public final int size;
+        public final String title;
+
+        Cluster(long key, double latitude, double longitude, int size, String title) {
+            this.key = key;
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.size = size;
+            this.title = title;
+        }
+    }
+
+    //Customizable configurations
+    public static final int MAX_ZOOM = 21;
+    // Width of one cluster cell on screen.
+    public static final int CLUSTER_SIZE_PX = 96;
+    private static final int TILE_SIZE_PX = 256;
+
+    private final List<Poi> pois;
+    private final Map<Long, Cluster>[] grids;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public PoiClusterIndex(List<Poi> pois) {
+        this.pois = new ArrayList<>(pois);
+        this.grids = new Map[MAX_ZOOM + 1];
+    }
+
+    public int size() {
+        return pois.size();
+    }
+
+    /**
+     * Width and height in degrees of one cluster cell at the given zoom.
+     */
+    public static double cellSize(int zoom) {
+        return CLUSTER_SIZE_PX * 360.0 / ((double) TILE_SIZE_PX * (1L << clampZoom(zoom)));
+    }
+
+    /**
+     * Returns the clusters whose cells overlap the given bounds at the given zoom.
+     * Bounds are padded by one cell so markers right at the edge do not pop in while panning.
+     * A west edge greater than the east one means the bounds cross the antimeridian.
+     */
+    public List<Cluster> query(double south, double west, double north, double east, int zoom) {
+        if (west > east) {
+            // Longitudes are indexed as -180..180, so query each side of the line.
+            List<Cluster> result = queryRange(south, west, north, 180, zoom);
+            Set<Long> seen = new HashSet<>();
+            for (Cluster cluster : result) {
+                seen.add(cluster.key);
+            }
+            for (Cluster cluster : queryRange(south, -180, north, east, zoom)) {
+                if (seen.add(cluster.key)) {
+                    result.add(cluster);
+                }
+            }
+            return result;
+        }
+        return queryRange(south, west, north, east, zoom);
+    }
+
+    private List<Cluster> queryRange(double south, double west, double north, double east,
+                                     int zoom) {
+        zoom = clampZoom(zoom);
+        Map<Long, Cluster> grid = gridFor(zoom);
+        double cell = cellSize(zoom);
+        long minRow = (long) Math.floor(south / cell) - 1;
+        long maxRow = (long) Math.floor(north / cell) + 1;
+        long minCol = (long) Math.floor(west / cell) - 1;
+        long maxCol = (long) Math.floor(east / cell) + 1;
+
+        List<Cluster> result = new ArrayList<>();
+        long visibleCells = (maxRow - minRow + 1) * (maxCol - minCol + 1);
+        if (visibleCells > grid.size()) {
+            // Zoomed far out over a sparse grid: scanning the occupied cells is cheaper.
+            for (Cluster cluster : grid.values()) {
+                long row = rowOf(cluster.key);
+                long col = colOf(cluster.key);
+                if (row >= minRow && row <= maxRow && col >= minCol && col <= maxCol) {
+                    result.add(cluster);
+                }
+            }
+            return result;
+        }
+        for (long row = minRow; row <= maxRow; row++) {
+            for (long col = minCol; col <= maxCol; col++) {
+                Cluster cluster = grid.get(key(row, col));
+                if (cluster != null) {
+                    result.add(cluster);
+                }
+            }
+        }
+        return result;
+    }
+
+    private synchronized Map<Long, Cluster> gridFor(int zoom) {
+        Map<Long, Cluster> grid = grids[zoom];
+        if (grid != null) {
+            return grid;
+        }
+        double cell = cellSize(zoom);
+        // Accumulate count and coordinate sums per cell, then place each cluster at its centroid.
+        Map<Long, double[]> sums = new HashMap<>();
+        Map<Long, String> firstTitles = new HashMap<>();
+        for (Poi poi : pois) {
+            long key = key((long) Math.floor(poi.latitude / cell), (long) Math.floor(poi.longitude / cell));
+            double[] sum = sums.get(key);
+            if (sum == null) {
+                sum = new double[3];
+                sums.put(key, sum);
+                firstTitles.put(key, poi.title);
+            }
+            sum[0]++;
+            sum[1] += poi.latitude;
+            sum[2] += poi.longitude;
+        }
+        grid = new HashMap<>(sums.size() * 2);
+        for (Map.Entry<Long, double[]> entry : sums.entrySet()) {
+            double[] sum = entry.getValue();
+            int count = (int) sum[0];
+            grid.put(entry.getKey(), new Cluster(entry.getKey(), sum[1] / count, sum[2] / count,
+                    count, firstTitles.get(entry.getKey())));
+        }
+        grids[zoom] = grid;
+        return grid;
+    }
+
+    private static int clampZoom(int zoom) {
+        return Math.max(0, Math.min(MAX_ZOOM, zoom));
+    }
+
+    private static long key(long row, long col) {
+        return (row << 32) | (col & 0xffffffffL);
+    }
+
+    private static long rowOf(long key) {
+        return key >> 32;
+    }
+
+    private static long colOf(long key) {
+        return (int) key;
+    }
+}
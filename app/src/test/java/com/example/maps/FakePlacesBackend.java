@@ -0,0 +1,67 @@
+package com.example.maps;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Offline {@link PlacesBackend} for tests: serves a fixed set of places with a configurable
+ * artificial latency and counts how many calls actually reach it. Like the real service
+ * ranked by distance, it returns the {@link PlacesBackend#MAX_RESULTS} nearest places.
+ */
+public class FakePlacesBackend implements PlacesBackend {
+
+    private final List<PlaceResult> places = new ArrayList<>();
+    private final long latencyMillis;
+    private final AtomicInteger calls = new AtomicInteger();
+    private volatile boolean failing;
+
+    public FakePlacesBackend(long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+    }
+
+    public FakePlacesBackend add(String id, double latitude, double longitude) {
+        places.add(new PlaceResult(id, "Place " + id, latitude, longitude));
+        return this;
+    }
+
+    public int getCalls() {
+        return calls.get();
+    }
+
+    public void setFailing(boolean failing) {
+        this.failing = failing;
+    }
+
+    @Override
+    public List<PlaceResult> searchNearby(String type, double latitude, double longitude,
+                                          double radiusMeters) throws IOException {
+        calls.incrementAndGet();
+        if (latencyMillis > 0) {
+            try {
+                Thread.sleep(latencyMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException(e);
+            }
+        }
+        if (failing) {
+            throw new IOException("Fake backend failure");
+        }
+        List<PlaceResult> result = new ArrayList<>();
+        double degrees = radiusMeters / 111_320;
+        for (PlaceResult place : places) {
+            if (Math.abs(place.latitude - latitude) <= degrees
+                    && Math.abs(place.longitude - longitude) <= degrees / Math.cos(Math.toRadians(latitude))) {
+                result.add(place);
+            }
+        }
+        final double cos = Math.cos(Math.toRadians(latitude));
+        Collections.sort(result, Comparator.comparingDouble(place ->
+                Math.hypot(place.latitude - latitude, (place.longitude - longitude) * cos)));
+        return result.size() > MAX_RESULTS ? result.subList(0, MAX_RESULTS) : result;
+    }
+}
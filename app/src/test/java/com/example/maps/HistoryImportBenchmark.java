@@ -0,0 +1,57 @@
+package com.example.maps;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+
+/**
+ * Throughput benchmark for {@link HistoryImporter} and {@link HistoryExporter}, run on the host
+ * from the unit test classpath. Imports a 1M-cell CSV into an empty history, imports it again
+ * (all duplicates), then exports the result, printing cells per second for each step.
+ */
+public class HistoryImportBenchmark {
+
+    private static final int SIDE = 1000;
+
+    public static void main(String[] args) throws IOException {
+        File dir = new File(System.getProperty("java.io.tmpdir"), "history_benchmark");
+        dir.mkdirs();
+        File csv = new File(dir, "cells.csv");
+        File holes = new File(dir, HoleStore.FILE_NAME);
+        holes.delete();
+
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(csv))) {
+            writer.write("lat,lon\n");
+            for (int row = 0; row < SIDE; row++) {
+                for (int col = 0; col < SIDE; col++) {
+                    writer.write(HoleStore.centerLatitude(2 * (62_000 + row)) + ","
+                            + HoleStore.centerLongitude(2 * (303_000 + col)) + "\n");
+                }
+            }
+        }
+        System.out.println("cores=" + Runtime.getRuntime().availableProcessors()
+                + " input=" + csv.length() / (1024 * 1024) + " MB");
+
+        HoleStore store = new HoleStore(holes);
+        HistoryImporter importer = new HistoryImporter(store);
+        report("import (new)", importer.importFile(csv, HistoryImporter.Format.CSV));
+        report("import (dupes)", importer.importFile(csv, HistoryImporter.Format.CSV));
+
+        HistoryExporter exporter = new HistoryExporter(store);
+        File geoJson = new File(dir, "cells.geojson");
+        long start = System.nanoTime();
+        long features = exporter.exportGeoJson(geoJson);
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        System.out.printf("export geojson: %d features, %d ms, %,.0f cells/s%n",
+                features, millis, (double) SIDE * SIDE * 1000 / Math.max(1, millis));
+        report("import geojson", new HistoryImporter(new HoleStore(new File(dir, "reimported")))
+                .importFile(geoJson, HistoryImporter.Format.GEOJSON));
+        new File(dir, "reimported").delete();
+    }
+
+    private static void report(String label, HistoryImporter.Result result) {
+        System.out.printf("%s: %s, %,.0f points/s%n",
+                label, result, result.points * 1000.0 / Math.max(1, result.millis));
+    }
+}
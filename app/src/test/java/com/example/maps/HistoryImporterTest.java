@@ -0,0 +1,231 @@
+package com.example.maps;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link HistoryImporter} and {@link HistoryExporter}.
+ */
+public class HistoryImporterTest {
+
+    private static HoleStore newStore() throws IOException {
+        File file = File.createTempFile("hole_coordinates", null);
+        file.delete();
+        return new HoleStore(file);
+    }
+
+    private static File write(String suffix, String content) throws IOException {
+        File file = File.createTempFile("history", suffix);
+        try (Writer writer = new FileWriter(file)) {
+            writer.write(content);
+        }
+        return file;
+    }
+
+    private static Set<Long> cells(HoleStore store) throws IOException {
+        final Set<Long> cells = new HashSet<>();
+        store.scanCenters(0, (lat, lon) -> cells.add(HoleStore.cellKey(lat, lon)));
+        return cells;
+    }
+
+    @Test
+    public void geoJsonRoundTrip_restoresTheSameCells() throws IOException {
+        HoleStore source = newStore();
+        // A walked street: five cells in a row, then a turn north.
+        for (int i = 0; i < 5; i++) {
+            source.discover(25.0260, 121.5380 + i * 0.0004);
+        }
+        source.discover(25.0264, 121.5396);
+        source.discover(25.0268, 121.5396);
+
+        File geoJson = File.createTempFile("history", ".geojson");
+        long features = new HistoryExporter(source).exportGeoJson(geoJson);
+        assertTrue(features < 7);
+
+        HoleStore target = newStore();
+        HistoryImporter.Result result = new HistoryImporter(target, 2)
+                .importFile(geoJson, HistoryImporter.Format.GEOJSON);
+        assertEquals(7, result.newCells);
+        assertEquals(cells(source), cells(target));
+    }
+
+    @Test
+    public void geoJsonRoundTrip_keepsCellsSouthAndWestOfTheOrigin() throws IOException {
+        HoleStore source = newStore();
+        // New York and Sydney put negative offsets on one axis each.
+        for (int i = 0; i < 6; i++) {
+            source.discover(40.71285, -74.00605 + i * 0.0004);
+            source.discover(-33.86885 - i * 0.0004, 151.20935);
+        }
+        assertEquals(12, cells(source).size());
+
+        File geoJson = File.createTempFile("history", ".geojson");
+        new HistoryExporter(source).exportGeoJson(geoJson);
+        HoleStore target = newStore();
+        HistoryImporter.Result result = new HistoryImporter(target, 2)
+                .importFile(geoJson, HistoryImporter.Format.GEOJSON);
+        assertEquals(12, result.newCells);
+        assertEquals(cells(source), cells(target));
+    }
+
+    @Test
+    public void csvImport_westOfGreenwich_keepsNeighbouringCells() throws IOException {
+        StringBuilder csv = new StringBuilder();
+        Set<String> centers = new HashSet<>();
+        for (int i = 0; i < 100; i++) {
+            double lat = 40.7128 + i * 0.0001;
+            double lon = -74.0060 - i * 0.0001;
+            csv.append(lat).append(',').append(lon).append('\n');
+            double[] center = HoleStore.snapToGrid(lat, lon,
+                    HoleStore.ORIGIN_LATITUDE, HoleStore.ORIGIN_LONGITUDE);
+            centers.add(center[0] + "," + center[1]);
+        }
+        HoleStore store = newStore();
+        HistoryImporter.Result result = new HistoryImporter(store, 2)
+                .importFile(write(".csv", csv.toString()), HistoryImporter.Format.CSV);
+        assertEquals(centers.size(), result.newCells);
+        assertEquals(centers.size(), cells(store).size());
+    }
+
+    // A GeoJSON ring through the given {row, col} grid indices, closed back to the first one.
+    private static String ring(long[]... vertices) {
+        StringBuilder ring = new StringBuilder("[");
+        for (int i = 0; i <= vertices.length; i++) {
+            long[] vertex = vertices[i % vertices.length];
+            ring.append(i == 0 ? "" : ",").append('[')
+                    .append(HoleStore.centerLongitude(vertex[1])).append(',')
+                    .append(HoleStore.centerLatitude(vertex[0])).append(']');
+        }
+        return ring.append(']').toString();
+    }
+
+    @Test
+    public void geoJsonPolygon_fillsOnlyCellsInsideItsRings() throws IOException {
+        // Neighbouring cell centers are two grid indices apart.
+        long row = 2 * 62_500;
+        long col = 2 * 303_000;
+        String triangle = ring(new long[]{row - 1, col - 1}, new long[]{row - 1, col + 10},
+                new long[]{row + 10, col - 1});
+        // A 5 x 5 block of cells with the middle one cut out.
+        String outer = ring(new long[]{row - 1, col + 19}, new long[]{row - 1, col + 29},
+                new long[]{row + 9, col + 29}, new long[]{row + 9, col + 19});
+        String hole = ring(new long[]{row + 3, col + 23}, new long[]{row + 3, col + 25},
+                new long[]{row + 5, col + 25}, new long[]{row + 5, col + 23});
+        String geoJson = "{\"type\":\"FeatureCollection\",\"features\":["
+                + "{\"type\":\"Feature\",\"geometry\":{\"type\":\"Polygon\",\"coordinates\":["
+                + triangle + "]}},"
+                + "{\"type\":\"Feature\",\"geometry\":{\"type\":\"MultiPolygon\",\"coordinates\":[["
+                + outer + "," + hole + "]]}}]}";
+
+        HoleStore store = newStore();
+        HistoryImporter.Result result = new HistoryImporter(store, 2)
+                .importFile(write(".geojson", geoJson), HistoryImporter.Format.GEOJSON);
+        // 15 cells lie under the triangle's hypotenuse, 24 around the hole.
+        assertEquals(39, result.newCells);
+        assertFalse(store.isOutside(HoleStore.centerLatitude(row), HoleStore.centerLongitude(col)));
+        assertTrue(store.isOutside(HoleStore.centerLatitude(row + 8),
+                HoleStore.centerLongitude(col + 8)));
+        assertTrue(store.isOutside(HoleStore.centerLatitude(row + 4),
+                HoleStore.centerLongitude(col + 24)));
+        assertFalse(store.isOutside(HoleStore.centerLatitude(row + 4),
+                HoleStore.centerLongitude(col + 22)));
+    }
+
+    @Test(expected = IOException.class)
+    public void geoJsonGeometry_withCoordinatesBeforeType_isRejected() throws IOException {
+        // As written by json.dumps(sort_keys=True); read blindly, only the vertex cells would land.
+        String square = ring(new long[]{0, 0}, new long[]{0, 8}, new long[]{8, 8}, new long[]{8, 0});
+        new HistoryImporter(newStore(), 2).importFile(write(".geojson",
+                "{\"features\":[{\"geometry\":{\"coordinates\":[" + square
+                        + "],\"type\":\"Polygon\"},\"type\":\"Feature\"}],"
+                        + "\"type\":\"FeatureCollection\"}"),
+                HistoryImporter.Format.GEOJSON);
+    }
+
+    @Test(expected = IOException.class)
+    public void geoJsonPolygon_coveringTooManyCells_isRejected() throws IOException {
+        String square = ring(new long[]{0, 0}, new long[]{0, 2_000}, new long[]{2_000, 2_000},
+                new long[]{2_000, 0});
+        new HistoryImporter(newStore(), 2).importFile(write(".geojson",
+                "{\"type\":\"Polygon\",\"coordinates\":[" + square + "]}"),
+                HistoryImporter.Format.GEOJSON);
+    }
+
+    @Test
+    public void gpxAndCsvExports_importBackUnchanged() throws IOException {
+        HoleStore source = newStore();
+        source.discover(25.0260, 121.5380);
+        source.discover(25.0300, 121.5400);
+        HistoryExporter exporter = new HistoryExporter(source);
+
+        File gpx = File.createTempFile("history", ".gpx");
+        File csv = File.createTempFile("history", ".csv");
+        assertEquals(2, exporter.exportGpx(gpx));
+        assertEquals(2, exporter.exportCsv(csv));
+
+        HoleStore fromGpx = newStore();
+        new HistoryImporter(fromGpx, 2).importFile(gpx, HistoryImporter.Format.GPX);
+        assertEquals(cells(source), cells(fromGpx));
+
+        HoleStore fromCsv = newStore();
+        new HistoryImporter(fromCsv, 2).importFile(csv, HistoryImporter.Format.CSV);
+        assertEquals(cells(source), cells(fromCsv));
+    }
+
+    @Test
+    public void gpxTrack_becomesCellsDedupedAgainstExistingHistory() throws IOException {
+        HoleStore store = newStore();
+        store.discover(25.0260, 121.5380);
+        File gpx = write(".gpx", "<?xml version=\"1.0\"?>\n<gpx><trk><trkseg>\n"
+                + "<trkpt lat=\"25.0260\" lon=\"121.5380\"><ele>10</ele></trkpt>\n"
+                + "<trkpt lon=\"121.5384\" lat=\"25.0260\"/>\n"
+                + "<trkpt lat=\"25.0261\" lon=\"121.5384\"/>\n"
+                + "</trkseg></trk></gpx>\n");
+
+        HistoryImporter.Result result = new HistoryImporter(store, 2)
+                .importFile(gpx, HistoryImporter.Format.GPX);
+        assertEquals(3, result.points);
+        assertEquals(1, result.newCells);
+        assertEquals(2, cells(store).size());
+    }
+
+    @Test
+    public void csv_skipsHeaderAndJunk() throws IOException {
+        HoleStore store = newStore();
+        File csv = write(".csv", "lat,lon,time\n25.0260,121.5380,0\nnot,a,point\n25.0300,121.5400");
+        HistoryImporter.Result result = new HistoryImporter(store, 2)
+                .importFile(csv, HistoryImporter.Format.CSV);
+        assertEquals(2, result.points);
+        assertEquals(2, result.newCells);
+    }
+
+    @Test
+    public void parallelImport_ofManyChunks_addsEveryCellOnce() throws IOException {
+        StringBuilder csv = new StringBuilder();
+        for (int row = 0; row < 300; row++) {
+            for (int col = 0; col < 300; col++) {
+                // Two fixes per cell, so half of the points are duplicates.
+                double lat = HoleStore.centerLatitude(2 * (62_500 + row));
+                double lon = HoleStore.centerLongitude(2 * (303_000 + col));
+                csv.append(lat).append(',').append(lon).append('\n');
+                csv.append(lat + 0.00005).append(',').append(lon - 0.00005).append('\n');
+            }
+        }
+        HoleStore store = newStore();
+        HistoryImporter.Result result = new HistoryImporter(store, 4)
+                .importFile(write(".csv", csv.toString()), HistoryImporter.Format.CSV);
+        assertEquals(180_000, result.points);
+        assertEquals(90_000, result.newCells);
+        assertEquals(90_000, cells(store).size());
+        // The import filled the store's own index instead of a copy of it.
+        assertEquals(90_000, store.knownCells().size());
+    }
+}
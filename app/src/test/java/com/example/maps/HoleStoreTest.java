@@ -0,0 +1,181 @@
+package com.example.maps;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link HoleStore}.
+ */
+public class HoleStoreTest {
+
+    private static HoleStore newStore() throws IOException {
+        File file = File.createTempFile("hole_coordinates", null);
+        file.delete();
+        return new HoleStore(file);
+    }
+
+    @Test
+    public void discover_opensEachCellOnce() throws IOException {
+        HoleStore store = newStore();
+        assertNotNull(store.discover(25.0260079, 121.5381223));
+        assertNull(store.discover(25.0260079, 121.5381223));
+        assertFalse(store.isOutside(25.0260079, 121.5381223));
+        assertTrue(store.isOutside(25.03, 121.54));
+    }
+
+    @Test
+    public void discover_seesCellsAddedThroughOtherStoresAndImports() throws IOException {
+        HoleStore store = newStore();
+        HoleStore other = new HoleStore(store.getFile());
+        assertTrue(store.isOutside(40.7128, -74.0060));
+
+        assertNotNull(other.discover(40.7128, -74.0060));
+        assertFalse(store.isOutside(40.7128, -74.0060));
+        assertNull(store.discover(40.71282, -74.00585));
+
+        double[] center = HoleStore.snapToGrid(-33.8688, 151.2093,
+                HoleStore.ORIGIN_LATITUDE, HoleStore.ORIGIN_LONGITUDE);
+        // Written by something else entirely: picked up from the file.
+        try (FileOutputStream out = new FileOutputStream(store.getFile(), true)) {
+            out.write((center[0] + "," + center[1] + "\n").getBytes());
+        }
+        assertFalse(other.isOutside(-33.8688, 151.2093));
+        assertFalse(other.add(center[0], center[1]));
+
+        // Bulk appends go into the shared index up front.
+        double[] imported = HoleStore.snapToGrid(-22.9068, -43.1729,
+                HoleStore.ORIGIN_LATITUDE, HoleStore.ORIGIN_LONGITUDE);
+        assertTrue(store.knownCells().add(HoleStore.cellKey(imported[0], imported[1])));
+        store.appendLines(ByteBuffer.wrap((imported[0] + "," + imported[1] + "\n").getBytes()));
+        assertFalse(other.isOutside(-22.9068, -43.1729));
+        List<double[]> centers = new ArrayList<>();
+        assertEquals(store.getFile().length(), store.readCenters(0, centers));
+        assertEquals(3, centers.size());
+        assertEquals(3, store.knownCells().size());
+    }
+
+    @Test
+    public void readCenters_onlyReturnsNewlyAppendedHoles() throws IOException {
+        HoleStore store = newStore();
+        store.add(25.0, 121.0);
+        store.add(25.1, 121.1);
+
+        List<double[]> first = new ArrayList<>();
+        long offset = store.readCenters(0, first);
+        assertEquals(2, first.size());
+
+        store.add(25.2, 121.2);
+        List<double[]> second = new ArrayList<>();
+        offset = store.readCenters(offset, second);
+        assertEquals(1, second.size());
+        assertEquals(25.2, second.get(0)[0], 0);
+
+        List<double[]> none = new ArrayList<>();
+        assertEquals(offset, store.readCenters(offset, none));
+        assertTrue(none.isEmpty());
+    }
+
+    @Test
+    public void readCenters_leavesPartialLineForLater() throws IOException {
+        HoleStore store = newStore();
+        store.add(25.0, 121.0);
+        try (FileOutputStream out = new FileOutputStream(store.getFile(), true)) {
+            out.write("25.3,12".getBytes());
+        }
+        List<double[]> centers = new ArrayList<>();
+        long offset = store.readCenters(0, centers);
+        assertEquals(1, centers.size());
+        assertTrue(offset < store.getFile().length());
+    }
+
+    @Test
+    public void scanCenters_doesNotBlockWritersWhileConsuming() throws Exception {
+        final HoleStore store = newStore();
+        store.add(25.0, 121.0);
+        final boolean[] added = {false};
+        long offset = store.scanCenters(0, (lat, lon) -> {
+            // A slow consumer, e.g. an export, while the tracker opens a cell.
+            Thread writer = new Thread(() -> {
+                try {
+                    added[0] = store.add(25.1, 121.1);
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            writer.start();
+            try {
+                writer.join(5000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(added[0]);
+        // The scan stopped at its snapshot, so the new line is left for the next call.
+        List<double[]> rest = new ArrayList<>();
+        store.readCenters(offset, rest);
+        assertEquals(1, rest.size());
+    }
+
+    @Test
+    public void add_skipsExactDuplicates() throws IOException {
+        HoleStore store = newStore();
+        assertTrue(store.add(25.0, 121.0));
+        assertFalse(store.add(25.0, 121.0));
+    }
+
+    @Test
+    public void cellKey_roundTripsSnappedCentersOnEverySideOfTheOrigin() {
+        double[][] points = {
+                {25.0260079, 121.5381223},  // Taipei
+                {40.7127753, -74.0059728},  // New York
+                {-33.8688197, 151.2092955}, // Sydney
+                {-22.9068467, -43.1728965}  // Rio de Janeiro
+        };
+        for (double[] point : points) {
+            double[] center = HoleStore.snapToGrid(point[0], point[1],
+                    HoleStore.ORIGIN_LATITUDE, HoleStore.ORIGIN_LONGITUDE);
+            long key = HoleStore.cellKey(center[0], center[1]);
+            assertEquals(center[0], HoleStore.centerLatitude(key >> 32), 1e-12);
+            assertEquals(center[1], HoleStore.centerLongitude((int) key), 1e-12);
+            assertTrue(HoleStore.isCenterIndex(key >> 32));
+            assertTrue(HoleStore.isCenterIndex((int) key));
+        }
+    }
+
+    @Test
+    public void cellKey_tellsNeighbouringCellsApartWestOfGreenwich() {
+        Set<String> centers = new HashSet<>();
+        Set<Long> keys = new HashSet<>();
+        for (int i = 0; i < 200; i++) {
+            double[] center = HoleStore.snapToGrid(40.7127753 - i * 0.00007, -74.0059728 + i * 0.00011,
+                    HoleStore.ORIGIN_LATITUDE, HoleStore.ORIGIN_LONGITUDE);
+            centers.add(center[0] + "," + center[1]);
+            keys.add(HoleStore.cellKey(center[0], center[1]));
+        }
+        assertEquals(centers.size(), keys.size());
+    }
+
+    @Test
+    public void snapToGrid_keepsParityForPointsOnCellEdges() {
+        for (int i = -40; i <= 40; i++) {
+            double edge = i * HoleStore.SHOW_RADIUS;
+            double[] center = HoleStore.snapToGrid(40.0 + edge, -74.0 + edge,
+                    HoleStore.ORIGIN_LATITUDE, HoleStore.ORIGIN_LONGITUDE);
+            long key = HoleStore.cellKey(center[0], center[1]);
+            assertTrue(HoleStore.isCenterIndex(key >> 32));
+            assertTrue(HoleStore.isCenterIndex((int) key));
+            assertTrue(Math.abs(center[0] - (40.0 + edge)) <= HoleStore.SHOW_RADIUS + 1e-9);
+            assertTrue(Math.abs(center[1] - (-74.0 + edge)) <= HoleStore.SHOW_RADIUS + 1e-9);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.maps;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Multi-threaded stress benchmark for {@link LeaderboardRanking}, run on the host from the
+ * unit test classpath (no device needed). Prints mixed update/query throughput for
+ * 1, 2, 4, ... threads up to the core count, so scaling with cores can be read straight
+ * off the output.
+ */
+public class LeaderboardRankingBenchmark {
+
+    private static final int USERS = 10_000;
+    private static final int MAX_SCORE = 50_000;
+    private static final long RUN_MILLIS = 2_000;
+    // Out of 100 operations: 80 updates, 10 rank lookups, 5 top-K, 5 neighbor windows.
+    private static final int UPDATE_PERCENT = 80;
+
+    public static void main(String[] args) throws InterruptedException {
+        int cores = Runtime.getRuntime().availableProcessors();
+        System.out.println("cores=" + cores + " users=" + USERS);
+
+        double single = 0;
+        for (int threads = 1; threads <= cores; threads *= 2) {
+            double opsPerSec = run(threads);
+            if (threads == 1) {
+                single = opsPerSec;
+            }
+            System.out.printf("threads=%2d  ops/s=%,12.0f  speedup=%.2fx%n",
+                    threads, opsPerSec, opsPerSec / single);
+        }
+    }
+
+    private static double run(int threads) throws InterruptedException {
+        LeaderboardRanking ranking = new LeaderboardRanking(64);
+        for (int i = 0; i < USERS; i++) {
+            ranking.update("user" + i, ThreadLocalRandom.current().nextInt(MAX_SCORE));
+        }
+
+        LongAdder ops = new LongAdder();
+        // Query results are summed here so the JIT can't drop the reads as dead code.
+        LongAdder sink = new LongAdder();
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] workers = new Thread[threads];
+        long deadline = System.nanoTime() + RUN_MILLIS * 1_000_000L;
+        for (int t = 0; t < threads; t++) {
+            workers[t] = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                long local = 0;
+                long results = 0;
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                while (System.nanoTime() < deadline) {
+                    String user = "user" + random.nextInt(USERS);
+                    int op = random.nextInt(100);
+                    if (op < UPDATE_PERCENT) {
+                        ranking.update(user, random.nextInt(MAX_SCORE));
+                    } else if (op < UPDATE_PERCENT + 10) {
+                        results += ranking.rankOf(user);
+                    } else if (op < UPDATE_PERCENT + 15) {
+                        results += ranking.topK(10).size();
+                    } else {
+                        results += ranking.neighbors(user, 5).size();
+                    }
+                    local++;
+                }
+                ops.add(local);
+                sink.add(results);
+            });
+            workers[t].start();
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        if (sink.sum() == 0) {
+            throw new IllegalStateException("Queries returned nothing");
+        }
+        return ops.sum() * 1000.0 / RUN_MILLIS;
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.maps;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link LeaderboardRanking}.
+ */
+public class LeaderboardRankingTest {
+
+    @Test
+    public void rank_usesCompetitionRanking() {
+        LeaderboardRanking ranking = new LeaderboardRanking(4);
+        ranking.update("a", 10);
+        ranking.update("b", 30);
+        ranking.update("c", 30);
+        ranking.update("d", 5);
+
+        assertEquals(1, ranking.rankOf("b"));
+        assertEquals(1, ranking.rankOf("c"));
+        assertEquals(3, ranking.rankOf("a"));
+        assertEquals(4, ranking.rankOf("d"));
+        assertEquals(-1, ranking.rankOf("missing"));
+    }
+
+    @Test
+    public void update_movesUserAndKeepsCounts() {
+        LeaderboardRanking ranking = new LeaderboardRanking(4);
+        ranking.update("a", 10);
+        ranking.update("b", 20);
+        ranking.update("a", 50);
+
+        assertEquals(2, ranking.size());
+        assertEquals(1, ranking.rankOf("a"));
+        assertEquals(2, ranking.rankOf("b"));
+        assertEquals("a", ranking.topK(1).get(0).getUserId());
+
+        assertTrue(ranking.remove("a"));
+        assertFalse(ranking.remove("a"));
+        assertEquals(1, ranking.size());
+        assertEquals(1, ranking.rankOf("b"));
+    }
+
+    @Test
+    public void topKAndNeighbors_followBoardOrder() {
+        LeaderboardRanking ranking = new LeaderboardRanking(4);
+        for (int i = 0; i < 10; i++) {
+            ranking.update("u" + i, i * 10);
+        }
+
+        List<LeaderboardRanking.Entry> top = ranking.topK(3);
+        assertEquals("u9", top.get(0).getUserId());
+        assertEquals("u8", top.get(1).getUserId());
+        assertEquals("u7", top.get(2).getUserId());
+
+        List<LeaderboardRanking.Entry> around = ranking.neighbors("u5", 2);
+        assertEquals(5, around.size());
+        assertEquals("u7", around.get(0).getUserId());
+        assertEquals("u5", around.get(2).getUserId());
+        assertEquals("u3", around.get(4).getUserId());
+
+        // Near the top the window is cut short.
+        assertEquals(3, ranking.neighbors("u9", 2).size());
+    }
+
+    @Test
+    public void largeScores_inOneCoarseBucket_stillRankExactly() {
+        LeaderboardRanking ranking = new LeaderboardRanking(4);
+        ranking.update("a", 1_000_000);
+        ranking.update("b", 1_000_001);
+        ranking.update("c", 1_000_001);
+        ranking.update("d", 1_000_003);
+        ranking.update("e", 5_000_000);
+        ranking.update("f", 200);
+
+        assertEquals(1, ranking.rankOf("e"));
+        assertEquals(2, ranking.rankOf("d"));
+        assertEquals(3, ranking.rankOf("b"));
+        assertEquals(3, ranking.rankOf("c"));
+        assertEquals(5, ranking.rankOf("a"));
+        assertEquals(6, ranking.rankOf("f"));
+        assertEquals(0, ranking.countAbove(Integer.MAX_VALUE));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void update_rejectsNegativeScore() {
+        new LeaderboardRanking(4).update("a", -1);
+    }
+
+    @Test
+    public void concurrentWriters_endInConsistentState() throws InterruptedException {
+        final int users = 2000;
+        final int threads = 8;
+        final LeaderboardRanking ranking = new LeaderboardRanking(16);
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < 20000; i++) {
+                    // Mix exact small-score buckets with coarse large-score ones.
+                    int score = random.nextBoolean() ? random.nextInt(300) : random.nextInt(2_000_000);
+                    ranking.update("u" + random.nextInt(users), score);
+                }
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        // Once writers are quiet the Fenwick counts must agree with the skip list order.
+        List<LeaderboardRanking.Entry> all = ranking.topK(Integer.MAX_VALUE);
+        assertEquals(ranking.size(), all.size());
+        int expectedRank = 1;
+        for (int i = 0; i < all.size(); i++) {
+            if (i > 0 && all.get(i).getScore() != all.get(i - 1).getScore()) {
+                expectedRank = i + 1;
+            }
+            assertEquals(expectedRank, ranking.rankOf(all.get(i).getUserId()));
+        }
+    }
+}
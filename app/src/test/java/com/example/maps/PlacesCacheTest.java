@@ -0,0 +1,209 @@
+package com.example.maps;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link PlacesCache}, run against {@link FakePlacesBackend}.
+ */
+public class PlacesCacheTest {
+
+    private static final double LAT = 25.0260079;
+    private static final double LON = 121.5381223;
+    private static final long TTL = 60_000;
+
+    private final AtomicLong now = new AtomicLong(1_000_000);
+
+    private PlacesCache cache(PlacesBackend backend, File dir) {
+        return new PlacesCache(backend, dir, 64, Long.MAX_VALUE, TTL, now::get);
+    }
+
+    private static File tempDir() throws IOException {
+        return Files.createTempDirectory("places_cache").toFile();
+    }
+
+    @Test
+    public void repeatedAndNearbyLookups_hitMemory() throws IOException {
+        FakePlacesBackend backend = new FakePlacesBackend(0)
+                .add("near", LAT + 0.0002, LON)
+                .add("far", LAT + 0.01, LON);
+        PlacesCache cache = cache(backend, tempDir());
+
+        List<PlaceResult> first = cache.searchNearby("restaurant", LAT, LON, 100);
+        assertEquals(1, first.size());
+        assertEquals("near", first.get(0).id);
+        int calls = backend.getCalls();
+
+        // The same search, and a slightly shifted one, are served from the cached cells.
+        cache.searchNearby("restaurant", LAT, LON, 100);
+        cache.searchNearby("restaurant", LAT + 0.00001, LON + 0.00001, 100);
+        assertEquals(calls, backend.getCalls());
+        assertTrue(cache.getStats().memoryHits.get() > 0);
+
+        // Another query type is keyed separately.
+        cache.searchNearby("cafe", LAT, LON, 100);
+        assertTrue(backend.getCalls() > calls);
+    }
+
+    @Test
+    public void expiredCells_areRefetched() throws IOException {
+        FakePlacesBackend backend = new FakePlacesBackend(0).add("a", LAT, LON);
+        PlacesCache cache = cache(backend, tempDir());
+
+        cache.searchNearby("restaurant", LAT, LON, 100);
+        int calls = backend.getCalls();
+        now.addAndGet(TTL);
+        cache.searchNearby("restaurant", LAT, LON, 100);
+        assertEquals(2 * calls, backend.getCalls());
+    }
+
+    @Test
+    public void diskTier_survivesNewCacheInstance() throws IOException {
+        File dir = tempDir();
+        FakePlacesBackend backend = new FakePlacesBackend(0).add("a", LAT, LON);
+        cache(backend, dir).searchNearby("restaurant", LAT, LON, 100);
+        int calls = backend.getCalls();
+
+        PlacesCache reopened = cache(backend, dir);
+        List<PlaceResult> places = reopened.searchNearby("restaurant", LAT, LON, 100);
+        assertEquals(1, places.size());
+        assertEquals("Place a", places.get(0).name);
+        assertEquals(calls, backend.getCalls());
+        assertTrue(reopened.getStats().diskHits.get() > 0);
+    }
+
+    @Test
+    public void concurrentIdenticalLookups_shareOneBackendCall() throws Exception {
+        // Slow backend so all threads arrive while the first call is still running.
+        FakePlacesBackend backend = new FakePlacesBackend(200).add("a", LAT, LON);
+        final PlacesCache cache = cache(backend, tempDir());
+        final double lat = 25.0255;
+        final double lon = 121.5385;
+        final int threads = 8;
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Throwable> errors = new ArrayList<>();
+        List<Thread> workers = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                    cache.searchNearby("restaurant", lat, lon, 10);
+                } catch (Throwable t) {
+                    synchronized (errors) {
+                        errors.add(t);
+                    }
+                }
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        assertTrue(errors.isEmpty());
+        // A 10 m search sits inside a single cell, so one call serves everybody.
+        assertEquals(1, backend.getCalls());
+        assertTrue(cache.getStats().hitRate() > 0.8);
+    }
+
+    @Test(expected = IOException.class)
+    public void backendFailure_isReported() throws IOException {
+        FakePlacesBackend backend = new FakePlacesBackend(0);
+        backend.setFailing(true);
+        cache(backend, tempDir()).searchNearby("restaurant", LAT, LON, 100);
+    }
+
+    @Test
+    public void denseCell_isSplitUntilEachSearchFits() throws IOException {
+        FakePlacesBackend backend = new FakePlacesBackend(0);
+        for (int i = 0; i < 60; i++) {
+            backend.add("p" + i, LAT + (i / 8) * 0.0003, LON + (i % 8) * 0.0003);
+        }
+        PlacesCache cache = cache(backend, tempDir());
+
+        // A single search would be cut off at MAX_RESULTS; the cell split recovers every place.
+        List<PlaceResult> places = cache.searchNearby("restaurant", LAT + 0.001, LON + 0.001, 400);
+        assertEquals(60, places.size());
+        assertTrue(cache.getStats().splits.get() > 0);
+    }
+
+    @Test
+    public void denseArea_staysWithinTheSplitBudget() throws IOException {
+        // One place every ~20 m over a couple of square kilometres.
+        FakePlacesBackend backend = new FakePlacesBackend(0);
+        for (int i = 0; i < 100; i++) {
+            for (int j = 0; j < 100; j++) {
+                backend.add(i + "_" + j, LAT - 0.01 + i * 0.0002, LON - 0.01 + j * 0.0002);
+            }
+        }
+        File dir = tempDir();
+
+        List<PlaceResult> places = cache(backend, dir).searchNearby("restaurant", LAT, LON, 1000);
+        assertFalse(places.isEmpty());
+        // At most four searched cells, each split at most twice: 4 * (1 + 4 + 16) calls.
+        assertTrue(backend.getCalls() <= 84);
+
+        // What the budget left truncated is not stored as complete.
+        int calls = backend.getCalls();
+        cache(backend, dir).searchNearby("restaurant", LAT, LON, 1000);
+        assertTrue(backend.getCalls() > calls);
+    }
+
+    @Test
+    public void truncatedSmallestCell_isNotWrittenToDisk() throws IOException {
+        File dir = tempDir();
+        FakePlacesBackend backend = new FakePlacesBackend(0);
+        for (int i = 0; i < 25; i++) {
+            backend.add("p" + i, LAT + i * 0.000001, LON);
+        }
+        List<PlaceResult> places = cache(backend, dir).searchNearby("restaurant", LAT, LON, 50);
+        assertEquals(PlacesBackend.MAX_RESULTS, places.size());
+        int calls = backend.getCalls();
+
+        // The full page may be missing places, so a new instance asks again.
+        cache(backend, dir).searchNearby("restaurant", LAT, LON, 50);
+        assertTrue(backend.getCalls() > calls);
+    }
+
+    @Test
+    public void sweepDisk_dropsExpiredThenOldestFiles() throws IOException {
+        File dir = tempDir();
+        FakePlacesBackend backend = new FakePlacesBackend(0)
+                .add("a", LAT, LON)
+                .add("b", LAT + 1, LON + 1);
+        PlacesCache cache = cache(backend, dir);
+        cache.searchNearby("restaurant", LAT, LON, 100);
+        long olderFiles = dir.listFiles().length;
+        now.addAndGet(TTL / 2);
+        cache.searchNearby("restaurant", LAT + 1, LON + 1, 100);
+        long newerBytes = 0;
+        for (File file : dir.listFiles()) {
+            if (file.lastModified() == now.get()) {
+                newerBytes += file.length();
+            }
+        }
+        assertTrue(dir.listFiles().length > olderFiles);
+
+        // Over the size cap the older search's cells go first.
+        new PlacesCache(backend, dir, 64, newerBytes, TTL, now::get).sweepDisk();
+        for (File file : dir.listFiles()) {
+            assertEquals(now.get(), file.lastModified());
+        }
+        assertTrue(dir.listFiles().length > 0);
+
+        // Once expired, nothing is left.
+        now.addAndGet(TTL);
+        cache.sweepDisk();
+        assertEquals(0, dir.listFiles().length);
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.maps;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link PoiClusterIndex}.
+ */
+public class PoiClusterIndexTest {
+
+    private static final double LAT = 25.0260079;
+    private static final double LON = 121.5381223;
+
+    @Test
+    public void nearbyPois_mergeWhenZoomedOut_splitWhenZoomedIn() {
+        List<PoiClusterIndex.Poi> pois = new ArrayList<>();
+        pois.add(new PoiClusterIndex.Poi("a", LAT, LON));
+        pois.add(new PoiClusterIndex.Poi("b", LAT + 0.0001, LON + 0.0001));
+        PoiClusterIndex index = new PoiClusterIndex(pois);
+
+        List<PoiClusterIndex.Cluster> far = index.query(LAT - 1, LON - 1, LAT + 1, LON + 1, 8);
+        assertEquals(1, far.size());
+        assertEquals(2, far.get(0).size);
+        assertEquals(LAT + 0.00005, far.get(0).latitude, 1e-9);
+
+        List<PoiClusterIndex.Cluster> near = index.query(LAT - 0.001, LON - 0.001,
+                LAT + 0.001, LON + 0.001, PoiClusterIndex.MAX_ZOOM);
+        assertEquals(2, near.size());
+    }
+
+    @Test
+    public void query_onlyReturnsVisibleCells() {
+        List<PoiClusterIndex.Poi> pois = new ArrayList<>();
+        pois.add(new PoiClusterIndex.Poi("here", LAT, LON));
+        pois.add(new PoiClusterIndex.Poi("far away", LAT - 3, LON - 3));
+        PoiClusterIndex index = new PoiClusterIndex(pois);
+
+        List<PoiClusterIndex.Cluster> clusters = index.query(LAT - 0.01, LON - 0.01,
+                LAT + 0.01, LON + 0.01, 16);
+        assertEquals(1, clusters.size());
+        assertEquals("here", clusters.get(0).title);
+    }
+
+    @Test
+    public void query_acrossTheAntimeridian_coversBothSides() {
+        List<PoiClusterIndex.Poi> pois = new ArrayList<>();
+        pois.add(new PoiClusterIndex.Poi("fiji", -17.8, 179.99));
+        pois.add(new PoiClusterIndex.Poi("samoa", -17.8, -179.99));
+        pois.add(new PoiClusterIndex.Poi("far", -17.8, 170.0));
+        PoiClusterIndex index = new PoiClusterIndex(pois);
+
+        List<PoiClusterIndex.Cluster> clusters = index.query(-18, 179.9, -17.6, -179.9, 18);
+        assertEquals(2, clusters.size());
+    }
+
+    @Test
+    public void visibleClusterCount_staysFlatAsDatasetGrows() {
+        int zoom = 15;
+        double cell = PoiClusterIndex.cellSize(zoom);
+        // A phone-sized viewport, about 10 by 20 cells.
+        double south = LAT, west = LON, north = LAT + 20 * cell, east = LON + 10 * cell;
+
+        int small = index(1_000).query(south, west, north, east, zoom).size();
+        int large = index(100_000).query(south, west, north, east, zoom).size();
+        int maxCells = 13 * 23;
+        assertTrue(small <= maxCells);
+        assertTrue(large <= maxCells);
+    }
+
+    private static PoiClusterIndex index(int count) {
+        List<PoiClusterIndex.Poi> pois = new ArrayList<>(count);
+        Random random = new Random(7);
+        for (int i = 0; i < count; i++) {
+            pois.add(new PoiClusterIndex.Poi("poi" + i,
+                    LAT + random.nextDouble() * 0.05, LON + random.nextDouble() * 0.05));
+        }
+        return new PoiClusterIndex(pois);
+    }
+}